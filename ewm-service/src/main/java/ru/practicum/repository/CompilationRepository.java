@@ -2,13 +2,24 @@ package ru.practicum.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import ru.practicum.model.Compilation;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface CompilationRepository extends JpaRepository<Compilation, Long> {
 
     Page<Compilation> findAllByPinned(Boolean pinned, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"events", "events.category", "events.initiator"})
+    List<Compilation> findAllByIdIn(Collection<Long> ids);
+
+    @Override
+    @EntityGraph(attributePaths = {"events", "events.category", "events.initiator"})
+    Optional<Compilation> findById(Long id);
 }
@@ -2,6 +2,8 @@ package ru.practicum.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.stereotype.Repository;
@@ -13,9 +15,23 @@ import java.util.Optional;
 @Repository
 public interface EventRepository extends JpaRepository<Event, Long>, JpaSpecificationExecutor<Event> {
 
+    @EntityGraph(attributePaths = {"category", "initiator"})
     Page<Event> findByInitiatorId(Long userId, Pageable page);
 
     List<Event> findByCategoryId(Long categoryId);
 
+    @EntityGraph(attributePaths = {"category", "initiator"})
     Optional<Event> findByIdAndState(Long eventId, Event.State state);
+
+    @Override
+    @EntityGraph(attributePaths = {"category", "initiator"})
+    Optional<Event> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = {"category", "initiator"})
+    List<Event> findAllById(Iterable<Long> ids);
+
+    @Override
+    @EntityGraph(attributePaths = {"category", "initiator"})
+    Page<Event> findAll(Specification<Event> spec, Pageable pageable);
 }
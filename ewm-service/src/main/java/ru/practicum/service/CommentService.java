@@ -5,6 +5,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.dto.comment.CommentDto;
 import ru.practicum.dto.comment.NewCommentDto;
 import ru.practicum.exception.NotFoundException;
@@ -26,6 +27,7 @@ public class CommentService {
     private final UserService userService;
     private final EventService eventService;
 
+    @Transactional
     public CommentDto createNewComment(NewCommentDto dto, Long userId, Long eventId) {
         User user = userService.getUserIfExistOrElseThrow(userId);
         Event event = eventService.getPublishedEventOrElseThrow(eventId);
@@ -34,6 +36,7 @@ public class CommentService {
         return CommentMapper.toDto(savedComment);
     }
 
+    @Transactional
     public CommentDto updateCommentByUser(Long userId, Long commentId, NewCommentDto dto) {
         User user = userService.getUserIfExistOrElseThrow(userId);
         Comment oldComment = getCommentIfExistOrElseThrow(commentId);
@@ -59,17 +62,20 @@ public class CommentService {
                 .orElseThrow(() -> new NotFoundException("Комментарий с id = " + id + " не найден"));
     }
 
+    @Transactional
     public void deleteComment(Long commentId) {
         getCommentIfExistOrElseThrow(commentId);
         commentRepository.deleteById(commentId);
         log.info("Успешно удален комментарий с id = {}", commentId);
     }
 
+    @Transactional(readOnly = true)
     public CommentDto getCommentById(Long commentId) {
         Comment comment = getCommentIfExistOrElseThrow(commentId);
         return CommentMapper.toDto(comment);
     }
 
+    @Transactional(readOnly = true)
     public List<CommentDto> getCommentsToEvent(Long eventId, int from, int size) {
         eventService.getPublishedEventOrElseThrow(eventId);
         Pageable pageable = PageRequest.of(from / size, size);
@@ -77,6 +83,7 @@ public class CommentService {
         return comments.stream().map(CommentMapper::toDto).toList();
     }
 
+    @Transactional(readOnly = true)
     public List<CommentDto> getAllUserComments(Long userId, int from, int size) {
         userService.getUserIfExistOrElseThrow(userId);
         Pageable pageable = PageRequest.of(from / size, size);
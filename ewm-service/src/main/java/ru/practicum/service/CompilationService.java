@@ -18,8 +18,11 @@ import ru.practicum.model.Event;
 import ru.practicum.repository.CompilationRepository;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -27,29 +30,21 @@ import java.util.Map;
 public class CompilationService {
     private final CompilationRepository compilationRepository;
     private final EventService eventService;
+    private final Transactions transactions;
 
 
     public CompilationDto createNewCompilation(NewCompilationDto dto) {
-        List<Event> events = new ArrayList<>();
-        if (dto.getEvents() != null) {
-            events = eventService.getAllEventsByIds(dto.getEvents());
-        }
-        Compilation compilation = CompilationMapper.newCompilationToModel(dto, events);
-
-        Compilation savedCompilation = compilationRepository.saveAndFlush(compilation);
-
-        List<Event> allEvents = savedCompilation.getEvents();
-        List<ViewStatsDto> stats = eventService.getAllEventsViewStats(allEvents);
-        Map<Long, Long> eventRequests = eventService.getEventsConfirmedRequests(allEvents);
-
-        List<EventShortDto> shortEvents = allEvents.stream().map(event -> {
-            if (event.getState().equals(Event.State.PUBLISHED)) {
-                return eventService.createEventShortDto(event, stats, eventRequests);
+        CompilationPage page = transactions.write(() -> {
+            List<Event> events = new ArrayList<>();
+            if (dto.getEvents() != null) {
+                events = eventService.getAllEventsByIds(dto.getEvents());
             }
-            return EventMapper.toShortDto(event, 0L, 0L);
-        }).toList();
+            Compilation compilation = CompilationMapper.newCompilationToModel(dto, events);
 
-        return CompilationMapper.toDto(savedCompilation, shortEvents);
+            return withConfirmedRequests(compilationRepository.saveAndFlush(compilation));
+        });
+
+        return toDto(page);
     }
 
 
@@ -64,39 +59,69 @@ public class CompilationService {
     }
 
     public CompilationDto updateCompilation(UpdateCompilationRequest dto, Long compId) {
-        Compilation oldCompilation = getCompilationIfExistOrElseThrow(compId);
-        if (dto.getTitle() != null) {
-            oldCompilation.setTitle(dto.getTitle());
-        }
-        if (dto.getPinned() != null) {
-            oldCompilation.setPinned(dto.getPinned());
-        }
-        if (dto.getEvents() != null) {
-            List<Event> events = eventService.getAllEventsByIds(dto.getEvents());
-            oldCompilation.setEvents(events);
-        }
-        Compilation updated = compilationRepository.saveAndFlush(oldCompilation);
-
-        List<Event> allEvents = updated.getEvents();
-        List<ViewStatsDto> stats = eventService.getAllEventsViewStats(allEvents);
-        Map<Long, Long> eventRequests = eventService.getEventsConfirmedRequests(allEvents);
-
-        List<EventShortDto> shortEvents = allEvents.stream().map(event -> {
-            if (event.getState().equals(Event.State.PUBLISHED)) {
-                return eventService.createEventShortDto(event, stats, eventRequests);
+        CompilationPage page = transactions.write(() -> {
+            Compilation oldCompilation = getCompilationIfExistOrElseThrow(compId);
+            if (dto.getTitle() != null) {
+                oldCompilation.setTitle(dto.getTitle());
             }
-            return EventMapper.toShortDto(event, 0L, 0L);
-        }).toList();
+            if (dto.getPinned() != null) {
+                oldCompilation.setPinned(dto.getPinned());
+            }
+            if (dto.getEvents() != null) {
+                List<Event> events = eventService.getAllEventsByIds(dto.getEvents());
+                oldCompilation.setEvents(events);
+            }
+            return withConfirmedRequests(compilationRepository.saveAndFlush(oldCompilation));
+        });
 
-        return CompilationMapper.toDto(updated, shortEvents);
+        return toDto(page);
     }
 
     public CompilationDto getCompilationById(Long compId) {
-        Compilation compilation = getCompilationIfExistOrElseThrow(compId);
-        List<Event> allEvents = compilation.getEvents();
+        CompilationPage page = transactions.read(() -> withConfirmedRequests(getCompilationIfExistOrElseThrow(compId)));
+
+        return toDto(page);
+    }
+
+    public List<CompilationDto> getCompilations(int from, int size, Boolean pinned) {
+        Pageable pageable = PageRequest.of(from / size, size);
+        List<CompilationPage> pages = transactions.read(() -> {
+            List<Compilation> pageContent;
+            if (pinned != null) {
+                pageContent = compilationRepository.findAllByPinned(pinned, pageable).getContent();
+            } else {
+                pageContent = compilationRepository.findAll(pageable).getContent();
+            }
+            Map<Long, Compilation> loaded = compilationRepository.findAllByIdIn(pageContent.stream()
+                            .map(Compilation::getId).toList()).stream()
+                    .collect(Collectors.toMap(Compilation::getId, Function.identity()));
+            List<Compilation> allCompilations = pageContent.stream().map(o -> loaded.get(o.getId())).toList();
+            Map<Long, Long> confirmedRequests = eventService.getEventsConfirmedRequests(distinctEvents(allCompilations));
+            return allCompilations.stream().map(o -> new CompilationPage(o, confirmedRequests)).toList();
+        });
+        List<Event> events = distinctEvents(pages.stream().map(CompilationPage::compilation).toList());
+        List<ViewStatsDto> stats = events.isEmpty() ? List.of() : eventService.getAllEventsViewStats(events);
+
+        return pages.stream().map(page -> toDto(page, stats)).toList();
+    }
 
-        List<ViewStatsDto> stats = eventService.getAllEventsViewStats(allEvents);
-        Map<Long, Long> eventRequests = eventService.getEventsConfirmedRequests(allEvents);
+    private static List<Event> distinctEvents(List<Compilation> compilations) {
+        Map<Long, Event> events = new LinkedHashMap<>();
+        compilations.forEach(compilation -> compilation.getEvents().forEach(event -> events.putIfAbsent(event.getId(), event)));
+        return new ArrayList<>(events.values());
+    }
+
+    private CompilationPage withConfirmedRequests(Compilation compilation) {
+        return new CompilationPage(compilation, eventService.getEventsConfirmedRequests(compilation.getEvents()));
+    }
+
+    private CompilationDto toDto(CompilationPage page) {
+        return toDto(page, eventService.getAllEventsViewStats(page.compilation().getEvents()));
+    }
+
+    private CompilationDto toDto(CompilationPage page, List<ViewStatsDto> stats) {
+        List<Event> allEvents = page.compilation().getEvents();
+        Map<Long, Long> eventRequests = page.confirmedRequests();
 
         List<EventShortDto> shortEvents = allEvents.stream().map(event -> {
             if (event.getState().equals(Event.State.PUBLISHED)) {
@@ -105,17 +130,9 @@ public class CompilationService {
             return EventMapper.toShortDto(event, 0L, 0L);
         }).toList();
 
-        return CompilationMapper.toDto(compilation, shortEvents);
+        return CompilationMapper.toDto(page.compilation(), shortEvents);
     }
 
-    public List<CompilationDto> getCompilations(int from, int size, Boolean pinned) {
-        Pageable pageable = PageRequest.of(from / size, size);
-        List<Compilation> allCompilations;
-        if (pinned != null) {
-            allCompilations = compilationRepository.findAllByPinned(pinned, pageable).getContent();
-        } else {
-            allCompilations = compilationRepository.findAll(pageable).getContent();
-        }
-        return allCompilations.stream().map(o -> getCompilationById(o.getId())).toList();
+    private record CompilationPage(Compilation compilation, Map<Long, Long> confirmedRequests) {
     }
 }
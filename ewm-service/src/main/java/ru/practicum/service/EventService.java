@@ -28,6 +28,7 @@ import ru.practicum.specification.EventSpecification;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
@@ -39,6 +40,7 @@ public class EventService {
     private final CategoryService categoryService;
     private final StatsClient statsClient;
     private final RequestRepository requestRepository;
+    private final Transactions transactions;
 
     @Transactional
     public EventFullDto createNewEvent(NewEventDto dto, Long userId) {
@@ -55,29 +57,34 @@ public class EventService {
         return EventMapper.toFullDto(savedEvent, 0L, 0L);
     }
 
-    @Transactional(readOnly = true)
     public EventFullDto getUserEventById(Long userId, Long eventId) {
-        User user = userService.getUserIfExistOrElseThrow(userId);
-        Event event = getEventIfExistOrElseThrow(eventId);
-        validateInitiator(event, user);
+        EventsPage page = readEvents(() -> {
+            User user = userService.getUserIfExistOrElseThrow(userId);
+            Event event = getEventIfExistOrElseThrow(eventId);
+            validateInitiator(event, user);
+            return List.of(event);
+        });
+        Event event = page.events().getFirst();
         Long views = 0L;
         Long confirmedRequests = 0L;
         if (event.getState().equals(Event.State.PUBLISHED)) {
             views = getEventViews(event);
-            confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, Request.Status.CONFIRMED);
+            confirmedRequests = page.confirmedRequests().getOrDefault(eventId, 0L);
         }
         return EventMapper.toFullDto(event, views, confirmedRequests);
     }
 
-    @Transactional(readOnly = true)
     public List<EventShortDto> getAllUserEvents(int from, int size, Long userId) {
         Pageable pageable = PageRequest.of(from / size, size);
-        userService.getUserIfExistOrElseThrow(userId);
-        List<Event> allEvents = eventRep.findByInitiatorId(userId, pageable).getContent();
+        EventsPage page = readEvents(() -> {
+            userService.getUserIfExistOrElseThrow(userId);
+            return eventRep.findByInitiatorId(userId, pageable).getContent();
+        });
+        List<Event> allEvents = page.events();
 
         List<ViewStatsDto> stats = getAllEventsViewStats(allEvents);
 
-        Map<Long, Long> eventRequests = getEventsConfirmedRequests(allEvents);
+        Map<Long, Long> eventRequests = page.confirmedRequests();
 
         return allEvents.stream().map(event -> {
             if (event.getState().equals(Event.State.PUBLISHED)) {
@@ -189,7 +196,6 @@ public class EventService {
         return EventMapper.toFullDto(updatedEvent, 0L, 0L);
     }
 
-    @Transactional(readOnly = true)
     public List<EventFullDto> getAllEventsByAdmin(List<Long> users, List<Event.State> states, List<Long> categories,
                                                   LocalDateTime rangeStart, LocalDateTime rangeEnd, int from, int size) {
         Pageable pageable = PageRequest.of(from / size, size);
@@ -198,11 +204,12 @@ public class EventService {
             throw new BadRequestException(errorMessage);
         }
         Specification<Event> eventSpecification = EventSpecification.eventAdminSearch(users, states, categories, rangeStart, rangeEnd);
-        List<Event> allEvents = eventRep.findAll(eventSpecification, pageable).getContent();
+        EventsPage page = readEvents(() -> eventRep.findAll(eventSpecification, pageable).getContent());
+        List<Event> allEvents = page.events();
 
         List<ViewStatsDto> stats = getAllEventsViewStats(allEvents);
 
-        Map<Long, Long> eventRequests = getEventsConfirmedRequests(allEvents);
+        Map<Long, Long> eventRequests = page.confirmedRequests();
 
 
         return allEvents.stream().map(event -> event.getState().equals(Event.State.PUBLISHED) ? createEventFullDto(event, stats, eventRequests)
@@ -224,9 +231,9 @@ public class EventService {
         return statsClient.getStats(start, end, true, uris);
     }
 
-    @Transactional
     public EventFullDto getPublishedEventById(Long eventId, HttpServletRequest request) {
-        Event event = getPublishedEventOrElseThrow(eventId);
+        EventsPage page = readEvents(() -> List.of(getPublishedEventOrElseThrow(eventId)));
+        Event event = page.events().getFirst();
 
         EndpointHitDto hitDto = EndpointHitDto.builder()
                 .ip(request.getRemoteAddr())
@@ -237,19 +244,12 @@ public class EventService {
 
         statsClient.hit(hitDto);
 
-        Long confirmedRequests = requestRepository.countByEventIdAndStatus(eventId, Request.Status.CONFIRMED);
-
-        try {
-            Thread.sleep(1000);
-        } catch (InterruptedException ignored) {
-            Thread.currentThread().interrupt();
-        }
+        Long confirmedRequests = page.confirmedRequests().getOrDefault(eventId, 0L);
         Long eventViews = getEventViews(event);
         return EventMapper.toFullDto(event, eventViews, confirmedRequests);
     }
 
 
-    @Transactional(readOnly = true)
     public List<EventShortDto> getAllEvents(String text, List<Long> categories, Boolean paid,
                                             LocalDateTime rangeStart, LocalDateTime rangeEnd,
                                             Boolean onlyAvailable, Sort sort, int from,
@@ -265,7 +265,8 @@ public class EventService {
         }
 
         Specification<Event> eventSpecification = EventSpecification.eventPublicSearch(text, categories, paid, rangeStart, rangeEnd, sort);
-        List<Event> allEvents = eventRep.findAll(eventSpecification, pageable).getContent();
+        EventsPage page = readEvents(() -> eventRep.findAll(eventSpecification, pageable).getContent());
+        List<Event> allEvents = page.events();
 
         EndpointHitDto hitDto = EndpointHitDto.builder()
                 .ip(request.getRemoteAddr())
@@ -277,7 +278,7 @@ public class EventService {
 
         List<ViewStatsDto> stats = getAllEventsViewStats(allEvents);
 
-        Map<Long, Long> eventRequests = getEventsConfirmedRequests(allEvents);
+        Map<Long, Long> eventRequests = page.confirmedRequests();
 
         Comparator<EventShortDto> comparator = Comparator.comparing(EventShortDto::getId);
 
@@ -393,4 +394,14 @@ public class EventService {
         return eventRep.findByIdAndState(id, Event.State.PUBLISHED)
                 .orElseThrow(() -> new NotFoundException("Событие с id = " + id + " не найдено или недоступно"));
     }
+
+    private EventsPage readEvents(Supplier<List<Event>> query) {
+        return transactions.read(() -> {
+            List<Event> events = query.get();
+            return new EventsPage(events, getEventsConfirmedRequests(events));
+        });
+    }
+
+    private record EventsPage(List<Event> events, Map<Long, Long> confirmedRequests) {
+    }
 }
@@ -0,0 +1,27 @@
+package ru.practicum.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+@Component
+public class Transactions {
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+
+    public Transactions(PlatformTransactionManager transactionManager) {
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public <T> T read(Supplier<T> action) {
+        return readTemplate.execute(status -> action.get());
+    }
+
+    public <T> T write(Supplier<T> action) {
+        return writeTemplate.execute(status -> action.get());
+    }
+}
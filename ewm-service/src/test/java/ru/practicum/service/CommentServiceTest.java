@@ -0,0 +1,68 @@
+package ru.practicum.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.StatsClient;
+import ru.practicum.dto.comment.CommentDto;
+import ru.practicum.dto.comment.NewCommentDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:ewm-comments;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("check")
+class CommentServiceTest {
+    @Autowired
+    private CommentService commentService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @MockBean
+    private StatsClient statsClient;
+
+    private long userId;
+    private long eventId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM comments");
+        jdbcTemplate.update("DELETE FROM events");
+        jdbcTemplate.update("DELETE FROM categories");
+        jdbcTemplate.update("DELETE FROM users");
+        userId = insert("INSERT INTO users (name, email) VALUES ('author', 'author@mail.ru')");
+        long categoryId = insert("INSERT INTO categories (name) VALUES ('category')");
+        eventId = insert("INSERT INTO events (initiator_id, category_id, title, description, annotation, " +
+                        "lat, lon, event_date, created_on, published_on, state) " +
+                        "VALUES (?, ?, 'title', 'description', 'annotation', 0, 0, ?, ?, ?, 'PUBLISHED')",
+                userId, categoryId,
+                Timestamp.valueOf(LocalDateTime.now().plusDays(10)),
+                Timestamp.valueOf(LocalDateTime.now().minusDays(1)),
+                Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+    }
+
+    @Test
+    void commentsMapLazyAuthorWithoutOpenInView() {
+        CommentDto created = commentService.createNewComment(new NewCommentDto("первый"), userId, eventId);
+        CommentDto updated = commentService.updateCommentByUser(userId, created.getId(), new NewCommentDto("второй"));
+
+        assertThat(updated.getText()).isEqualTo("второй");
+        assertThat(commentService.getCommentById(created.getId()).getAuthor().getName()).isEqualTo("author");
+        assertThat(commentService.getCommentsToEvent(eventId, 0, 10))
+                .extracting(comment -> comment.getAuthor().getName(), CommentDto::getEventId)
+                .containsExactly(tuple("author", eventId));
+        assertThat(commentService.getAllUserComments(userId, 0, 10)).extracting(CommentDto::getText)
+                .containsExactly("второй");
+    }
+
+    private long insert(String sql, Object... args) {
+        jdbcTemplate.update(sql, args);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + sql.split(" ")[2], Long.class);
+    }
+}
@@ -0,0 +1,187 @@
+package ru.practicum.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.StatsClient;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.dto.compilation.CompilationDto;
+import ru.practicum.dto.event.EventShortDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ewm-stats;DB_CLOSE_DELAY=-1",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@ActiveProfiles("check")
+class StatsEnrichmentTest {
+    private static final int EVENTS = 5;
+
+    @Autowired
+    private EventService eventService;
+    @Autowired
+    private CompilationService compilationService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HikariDataSource dataSource;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @MockBean
+    private StatsClient statsClient;
+
+    private final List<String> violations = new ArrayList<>();
+    private final AtomicInteger statsCalls = new AtomicInteger();
+    private final List<Long> eventIds = new ArrayList<>();
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM compilation_events");
+        jdbcTemplate.update("DELETE FROM compilations");
+        jdbcTemplate.update("DELETE FROM requests");
+        jdbcTemplate.update("DELETE FROM events");
+        jdbcTemplate.update("DELETE FROM categories");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < EVENTS; i++) {
+            long userId = insert("INSERT INTO users (name, email) VALUES (?, ?)", "user" + i, "user" + i + "@mail.ru");
+            long categoryId = insert("INSERT INTO categories (name) VALUES (?)", "category" + i);
+            long eventId = insert("INSERT INTO events (initiator_id, category_id, title, description, annotation, " +
+                            "lat, lon, event_date, created_on, published_on, state) " +
+                            "VALUES (?, ?, ?, ?, ?, 0, 0, ?, ?, ?, 'PUBLISHED')",
+                    userId, categoryId, "title" + i, "description" + i, "annotation" + i,
+                    Timestamp.valueOf(LocalDateTime.now().plusDays(10)),
+                    Timestamp.valueOf(LocalDateTime.now().minusDays(1)),
+                    Timestamp.valueOf(LocalDateTime.now().minusHours(1)));
+            jdbcTemplate.update("INSERT INTO requests (requester_id, event_id, status) VALUES (?, ?, 'CONFIRMED')",
+                    userId, eventId);
+            eventIds.add(eventId);
+        }
+        when(statsClient.hit(any())).thenAnswer(invocation -> {
+            checkNoConnectionHeld("hit");
+            return true;
+        });
+        when(statsClient.getStats(any(), any(), any(), anyList())).thenAnswer(invocation -> {
+            checkNoConnectionHeld("getStats");
+            statsCalls.incrementAndGet();
+            List<String> uris = invocation.getArgument(3);
+            return uris.stream().map(uri -> new ViewStatsDto("ewm-service", uri, 3L)).toList();
+        });
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void publicEventListingCallsStatsOutsideTransactionWithoutNPlusOne() {
+        List<EventShortDto> events = eventService.getAllEvents(null, null, null, null, null, false, null, 0, 10,
+                request("/events"));
+
+        assertThat(events).hasSize(EVENTS);
+        assertThat(events).allSatisfy(event -> {
+            assertThat(event.getViews()).isEqualTo(3L);
+            assertThat(event.getConfirmedRequests()).isEqualTo(1L);
+            assertThat(event.getCategory().getName()).startsWith("category");
+            assertThat(event.getInitiator().getName()).startsWith("user");
+        });
+        assertThat(statsCalls).hasValue(1);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+        assertThat(violations).isEmpty();
+    }
+
+    @Test
+    void publicEventDetailsCallStatsOutsideTransaction() {
+        long eventId = eventIds.get(0);
+
+        assertThat(eventService.getPublishedEventById(eventId, request("/events/" + eventId)).getViews()).isEqualTo(3L);
+
+        assertThat(statsCalls).hasValue(1);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+        assertThat(violations).isEmpty();
+    }
+
+    @Test
+    void compilationCallsStatsOutsideTransactionWithoutNPlusOne() {
+        long compilationId = insert("INSERT INTO compilations (pinned, title) VALUES (false, 'compilation')");
+        eventIds.forEach(eventId -> jdbcTemplate.update(
+                "INSERT INTO compilation_events (compilation_id, event_id) VALUES (?, ?)", compilationId, eventId));
+        statistics.clear();
+
+        assertThat(compilationService.getCompilationById(compilationId).getEvents()).hasSize(EVENTS);
+
+        assertThat(statsCalls).hasValue(1);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(2);
+        assertThat(violations).isEmpty();
+    }
+
+    @Test
+    void compilationListingMakesOneStatsCallForWholePage() {
+        for (int i = 0; i < 3; i++) {
+            long compilationId = insert("INSERT INTO compilations (pinned, title) VALUES (true, ?)", "compilation" + i);
+            for (long eventId : eventIds.subList(i, i + 3)) {
+                jdbcTemplate.update("INSERT INTO compilation_events (compilation_id, event_id) VALUES (?, ?)",
+                        compilationId, eventId);
+            }
+        }
+        statistics.clear();
+
+        List<CompilationDto> compilations = compilationService.getCompilations(0, 10, true);
+
+        assertThat(compilations).hasSize(3).allSatisfy(compilation -> assertThat(compilation.getEvents())
+                .hasSize(3)
+                .allSatisfy(event -> {
+                    assertThat(event.getViews()).isEqualTo(3L);
+                    assertThat(event.getConfirmedRequests()).isEqualTo(1L);
+                    assertThat(event.getCategory().getName()).startsWith("category");
+                }));
+        assertThat(statsCalls).hasValue(1);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+        assertThat(violations).isEmpty();
+    }
+
+    @Test
+    void emptyCompilationPageSkipsStats() {
+        assertThat(compilationService.getCompilations(0, 10, null)).isEmpty();
+
+        assertThat(statsCalls).hasValue(0);
+    }
+
+    private void checkNoConnectionHeld(String call) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            violations.add(call + ": транзакция открыта");
+        }
+        if (dataSource.getHikariPoolMXBean().getActiveConnections() > 0) {
+            violations.add(call + ": удерживается соединение с БД");
+        }
+    }
+
+    private long insert(String sql, Object... args) {
+        jdbcTemplate.update(sql, args);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + sql.split(" ")[2], Long.class);
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", uri);
+        request.setRemoteAddr("192.168.0.1");
+        return request;
+    }
+}
@@ -0,0 +1,80 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.ViewStatsDto;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class AggregationBenchmark {
+    @Param({"10", "100"})
+    public int filterSize;
+
+    private List<String> uris;
+
+    @Setup
+    public void chooseUris(StatsContext stats) {
+        uris = stats.randomUris(filterSize);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> serviceStats(StatsContext stats) {
+        return stats.service.getStats(stats.start, stats.end, false, false, null);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> serviceStatsForUris(StatsContext stats) {
+        return stats.service.getStats(stats.start, stats.end, false, false, uris);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> serviceStatsUniqueIp(StatsContext stats) {
+        return stats.service.getStats(stats.start, stats.end, true, false, null);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> serviceStatsUniqueIpForUris(StatsContext stats) {
+        return stats.service.getStats(stats.start, stats.end, true, false, uris);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> serviceStatsUniqueIpApprox(StatsContext stats) {
+        return stats.service.getStats(stats.start, stats.end, true, true, null);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> storageStats(StatsContext stats) {
+        return stats.storage.getStats(stats.start, stats.end, null);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> storageStatsForUris(StatsContext stats) {
+        return stats.storage.getStats(stats.start, stats.end, uris);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> storageStatsUniqueIp(StatsContext stats) {
+        return stats.storage.getStatsUniqueIp(stats.start, stats.end, null);
+    }
+
+    @Benchmark
+    public List<ViewStatsDto> storageStatsUniqueIpForUris(StatsContext stats) {
+        return stats.storage.getStatsUniqueIp(stats.start, stats.end, uris);
+    }
+}
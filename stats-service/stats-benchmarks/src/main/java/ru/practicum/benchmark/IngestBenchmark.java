@@ -0,0 +1,50 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.practicum.EndpointHitDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class IngestBenchmark {
+    private static final int HITS_PER_INVOCATION = 1000;
+
+    @Benchmark
+    public void singleHit(StatsContext stats) {
+        stats.service.createNewEndpointHit(stats.randomHit());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS_PER_INVOCATION)
+    public void batchedHits(StatsContext stats, Batching batching) {
+        for (int sent = 0; sent < HITS_PER_INVOCATION; sent += batching.batchSize) {
+            List<EndpointHitDto> batch = new ArrayList<>(batching.batchSize);
+            for (int i = 0; i < batching.batchSize; i++) {
+                batch.add(stats.randomHit());
+            }
+            stats.service.createNewEndpointHits(batch);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batching {
+        @Param({"100", "1000"})
+        public int batchSize;
+    }
+}
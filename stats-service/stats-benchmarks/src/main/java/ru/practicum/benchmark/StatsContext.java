@@ -0,0 +1,106 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.StatsServerApp;
+import ru.practicum.StatsService;
+import ru.practicum.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+public class StatsContext {
+    static final String APP = "ewm-main-service";
+    static final int SEED_DAYS = 30;
+    private static final int SEED_BATCH = 1000;
+
+    @Param({"100000"})
+    public int hits;
+
+    @Param({"1000"})
+    public int uriCount;
+
+    @Param({"5000"})
+    public int ipCount;
+
+    ConfigurableApplicationContext context;
+    StatsService service;
+    HitStorage storage;
+    LocalDateTime start;
+    LocalDateTime end;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new SpringApplicationBuilder(StatsServerApp.class)
+                .web(WebApplicationType.NONE)
+                .profiles("check")
+                .run("--spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=0",
+                        "--spring.sql.init.separator=;",
+                        "--stats.storage.type=jdbc",
+                        "--stats.ingest.async.enabled=false",
+                        "--stats.cache.enabled=false",
+                        "--stats.hot-window.minutes=0",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type=WARN",
+                        "--logging.level.org.hibernate.orm.jdbc.bind=WARN",
+                        "--logging.level.org.springframework.transaction.interceptor=WARN",
+                        "--logging.level.org.springframework.orm.jpa.JpaTransactionManager=WARN");
+        service = context.getBean(StatsService.class);
+        storage = context.getBean(HitStorage.class);
+        end = LocalDateTime.now().withNano(0);
+        start = end.minusDays(SEED_DAYS);
+        List<EndpointHitDto> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < hits; i++) {
+            batch.add(randomHit());
+            if (batch.size() == SEED_BATCH) {
+                service.createNewEndpointHits(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            service.createNewEndpointHits(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    EndpointHitDto randomHit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int ip = random.nextInt(ipCount);
+        return EndpointHitDto.builder()
+                .app(APP)
+                .uri(uri(random.nextInt(uriCount)))
+                .ip("10." + (ip >> 16 & 0xFF) + "." + (ip >> 8 & 0xFF) + "." + (ip & 0xFF))
+                .timestamp(end.minusSeconds(random.nextLong(SEED_DAYS * 24L * 3600)))
+                .build();
+    }
+
+    List<String> randomUris(int count) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> uris = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            uris.add(uri(random.nextInt(uriCount)));
+        }
+        return uris;
+    }
+
+    static String uri(int id) {
+        return "/events/" + id;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Slf4j
+public class StatsCircuitBreaker implements ClientHttpRequestInterceptor {
+    private final int failureThreshold;
+    private final long openNanos;
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<>();
+    private final Counter rejected;
+
+    public StatsCircuitBreaker(int failureThreshold, Duration openDuration, MeterRegistry registry) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.rejected = registry.counter("stats.client.circuit.rejected");
+        registry.gauge("stats.client.circuit.open", circuits, c -> c.values().stream().filter(Circuit::isOpen).count());
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String path = request.getURI().getPath();
+        String server = request.getURI().getAuthority()
+                + (path.endsWith("/hit") || path.endsWith("/hit/batch") ? " (запись)" : " (чтение)");
+        Circuit circuit = circuits.computeIfAbsent(server, s -> new Circuit());
+        if (!circuit.tryAcquire()) {
+            rejected.increment();
+            throw new StatsUnavailableException("Сервис статистики " + server + " недоступен, запрос отклонен");
+        }
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            onFailure(server, circuit);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            onFailure(server, circuit);
+        } else {
+            circuit.onSuccess();
+        }
+        return response;
+    }
+
+    private void onFailure(String server, Circuit circuit) {
+        if (circuit.onFailure()) {
+            log.warn("Сервис статистики {} отключен на {} мс после ошибок подряд: {}",
+                    server, Duration.ofNanos(openNanos).toMillis(), failureThreshold);
+        }
+    }
+
+    private class Circuit {
+        private int failures;
+        private boolean open;
+        private boolean probing;
+        private long openedAt;
+
+        private synchronized boolean tryAcquire() {
+            if (!open) {
+                return true;
+            }
+            if (probing || System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+
+        private synchronized void onSuccess() {
+            failures = 0;
+            open = false;
+            probing = false;
+        }
+
+        private synchronized boolean onFailure() {
+            failures++;
+            boolean opened = probing || !open && failures >= failureThreshold;
+            if (opened) {
+                open = true;
+                probing = false;
+                openedAt = System.nanoTime();
+            }
+            return opened;
+        }
+
+        private synchronized boolean isOpen() {
+            return open;
+        }
+    }
+}
@@ -1,42 +1,278 @@
 package ru.practicum;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
-import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
-@RequiredArgsConstructor
-public class StatsClient {
+@Slf4j
+public class StatsClient implements AutoCloseable {
     private final RestTemplate rest;
-    @Value("${services.stats-server.url:http://localhost:9090}")
-    private String serverUrl;
+    private final ObjectReader statsReader = Jackson2ObjectMapperBuilder.json().build().readerFor(ViewStatsDto.class);
+    private final StatsShardRing shards;
+    private final int hitAttempts;
+    private final Duration retryBackoff;
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+    private final StatsHitSender sender;
+    private final StatsViewsCache viewsCache;
+    private final boolean aggregateHits;
+    private final int postThreshold;
+    private final int chunkSize;
 
-    public void hit(EndpointHitDto body) {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        HttpEntity<EndpointHitDto> requestEntity = new HttpEntity<>(body, headers);
-        rest.postForEntity(serverUrl + "/hit", requestEntity, Void.class);
+    public StatsClient(RestTemplate rest, StatsShardRing shards, StatsViewsCache viewsCache, int hitAttempts,
+                       Duration retryBackoff, int bufferCapacity, int batchSize, Duration flushInterval,
+                       boolean aggregateHits, int postThreshold, int chunkSize, MeterRegistry registry) {
+        this.rest = rest;
+        this.shards = shards;
+        this.viewsCache = viewsCache;
+        this.hitAttempts = hitAttempts;
+        this.retryBackoff = retryBackoff;
+        this.aggregateHits = aggregateHits;
+        this.postThreshold = postThreshold;
+        this.chunkSize = chunkSize;
+        this.sender = new StatsHitSender(bufferCapacity, batchSize, flushInterval, registry, this::sendHits);
+    }
+
+    public boolean hit(EndpointHitDto body) {
+        if (body.getHitId() == null) {
+            body.setHitId(UUID.randomUUID().toString());
+        }
+        viewsCache.recordHit(body);
+        if (sender.offer(body)) {
+            return true;
+        }
+        viewsCache.forget(List.of(body));
+        return false;
+    }
+
+    @Override
+    public void close() {
+        sender.close();
+        fanOut.shutdown();
     }
 
     public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, Boolean unique, List<String> uris) {
+        if (!viewsCache.accepts(end, uris)) {
+            return loadStats(start, end, unique, uris);
+        }
+        List<ViewStatsDto> result = new ArrayList<>(viewsCache.get(start, Boolean.TRUE.equals(unique), uris,
+                missing -> loadStats(start, end, unique, missing)));
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    private List<ViewStatsDto> loadStats(LocalDateTime start, LocalDateTime end, Boolean unique, List<String> uris) {
         HttpHeaders headers = new HttpHeaders();
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
         HttpEntity<ViewStatsDto> requestEntity = new HttpEntity<>(null, headers);
-        StringBuilder path = new StringBuilder(serverUrl + "/stats")
+        List<Supplier<List<ViewStatsDto>>> requests = new ArrayList<>();
+        route(uris).forEach((shard, shardUris) -> {
+            if (shardUris.size() <= postThreshold) {
+                requests.add(() -> fetchStats(shard, start, end, unique, shardUris, requestEntity));
+                return;
+            }
+            List<String> distinct = List.copyOf(new LinkedHashSet<>(shardUris));
+            for (int from = 0; from < distinct.size(); from += chunkSize) {
+                List<String> chunk = distinct.subList(from, Math.min(distinct.size(), from + chunkSize));
+                requests.add(() -> queryStats(shard, start, end, unique, chunk));
+            }
+        });
+        if (requests.size() == 1) {
+            return requests.getFirst().get();
+        }
+        List<CompletableFuture<List<ViewStatsDto>>> parts = requests.stream()
+                .map(request -> CompletableFuture.supplyAsync(request, fanOut))
+                .toList();
+        Map<String, ViewStatsDto> merged = new LinkedHashMap<>();
+        for (CompletableFuture<List<ViewStatsDto>> part : parts) {
+            for (ViewStatsDto stats : join(part)) {
+                merged.merge(stats.getApp() + "\n" + stats.getUri(), stats,
+                        (a, b) -> new ViewStatsDto(a.getApp(), a.getUri(), a.getHits() + b.getHits()));
+            }
+        }
+        List<ViewStatsDto> result = new ArrayList<>(merged.values());
+        result.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return result;
+    }
+
+    // Строки одного шарда приходят по убыванию числа просмотров, шарды выгружаются друг за другом.
+    public void streamStats(LocalDateTime start, LocalDateTime end, Boolean unique, List<String> uris,
+                            Consumer<ViewStatsDto> consumer) {
+        route(uris).forEach((shard, shardUris) -> rest.execute(statsPath(shard, start, end, unique, shardUris),
+                HttpMethod.GET,
+                request -> request.getHeaders().setAccept(List.of(MediaType.APPLICATION_NDJSON)),
+                response -> {
+                    try (MappingIterator<ViewStatsDto> rows = statsReader.readValues(response.getBody())) {
+                        while (rows.hasNextValue()) {
+                            consumer.accept(rows.nextValue());
+                        }
+                    }
+                    return null;
+                }));
+    }
+
+    private int sendHits(List<EndpointHitDto> hits) {
+        Map<String, List<EndpointHitDto>> batches = new LinkedHashMap<>();
+        for (EndpointHitDto hit : hits) {
+            batches.computeIfAbsent(shards.shardFor(hit.getUri()), shard -> new ArrayList<>()).add(hit);
+        }
+        int undelivered = 0;
+        for (Map.Entry<String, List<EndpointHitDto>> batch : batches.entrySet()) {
+            try {
+                postHits(batch.getKey() + "/hit/batch", aggregateHits ? aggregate(batch.getValue()) : batch.getValue());
+                viewsCache.delivered(batch.getValue());
+            } catch (RuntimeException e) {
+                viewsCache.forget(batch.getValue());
+                undelivered += batch.getValue().size();
+                log.error("Не удалось отправить {} записей в {}", batch.getValue().size(), batch.getKey(), e);
+            }
+        }
+        return undelivered;
+    }
+
+    private static List<EndpointHitDto> aggregate(List<EndpointHitDto> hits) {
+        Map<HitKey, List<EndpointHitDto>> groups = new LinkedHashMap<>();
+        for (EndpointHitDto hit : hits) {
+            LocalDateTime second = hit.getTimestamp() == null ? null : hit.getTimestamp().truncatedTo(ChronoUnit.SECONDS);
+            HitKey key = new HitKey(hit.getApp(), hit.getUri(), hit.getIp(), second);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(hit);
+        }
+        List<EndpointHitDto> merged = new ArrayList<>(groups.size());
+        groups.forEach((key, group) -> merged.add(group.size() == 1 ? group.getFirst() : EndpointHitDto.builder()
+                .hitId(mergedId(group))
+                .app(key.app())
+                .uri(key.uri())
+                .ip(key.ip())
+                .timestamp(key.second())
+                .weight(group.stream().mapToInt(StatsClient::weightOf).sum())
+                .build()));
+        return merged;
+    }
+
+    // Повтор того же пакета должен получить тот же идентификатор, иначе сервер не распознает его как дубликат.
+    private static String mergedId(List<EndpointHitDto> group) {
+        List<String> ids = group.stream().map(EndpointHitDto::getHitId).toList();
+        if (ids.contains(null)) {
+            return null;
+        }
+        String joined = ids.stream().sorted().collect(Collectors.joining("\n"));
+        return UUID.nameUUIDFromBytes(joined.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    private static int weightOf(EndpointHitDto hit) {
+        return hit.getWeight() == null ? 1 : hit.getWeight();
+    }
+
+    private void postHits(String url, List<EndpointHitDto> hits) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<List<EndpointHitDto>> requestEntity = new HttpEntity<>(hits, headers);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                rest.postForEntity(url, requestEntity, Void.class);
+                return;
+            } catch (StatsUnavailableException e) {
+                throw e;
+            } catch (ResourceAccessException | HttpServerErrorException | HttpClientErrorException.TooManyRequests e) {
+                if (attempt >= hitAttempts) {
+                    throw e;
+                }
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    private void backOff(int attempt, RuntimeException cause) {
+        try {
+            Thread.sleep(retryBackoff.multipliedBy(1L << (attempt - 1)).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+    private Map<String, List<String>> route(List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            Map<String, List<String>> all = new LinkedHashMap<>();
+            shards.shards().forEach(shard -> all.put(shard, List.of()));
+            return all;
+        }
+        return shards.partition(uris);
+    }
+
+    private List<ViewStatsDto> fetchStats(String shard, LocalDateTime start, LocalDateTime end, Boolean unique,
+                                          List<String> uris, HttpEntity<ViewStatsDto> requestEntity) {
+        ViewStatsDto[] body = rest.getForEntity(statsPath(shard, start, end, unique, uris), ViewStatsDto[].class,
+                requestEntity).getBody();
+        return body == null ? new ArrayList<>() : List.of(body);
+    }
+
+    private List<ViewStatsDto> queryStats(String shard, LocalDateTime start, LocalDateTime end, Boolean unique,
+                                          List<String> uris) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+        StatsQueryDto query = StatsQueryDto.builder()
+                .start(start)
+                .end(end)
+                .unique(unique)
+                .uris(uris)
+                .build();
+        ViewStatsDto[] body = rest.postForEntity(shard + "/stats/query", new HttpEntity<>(query, headers),
+                ViewStatsDto[].class).getBody();
+        return body == null ? new ArrayList<>() : List.of(body);
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private String statsPath(String shard, LocalDateTime start, LocalDateTime end, Boolean unique, List<String> uris) {
+        StringBuilder path = new StringBuilder(shard + "/stats")
                 .append("?start=").append(start)
                 .append("&end=").append(end)
                 .append("&unique=").append(unique);
         if (uris != null && !uris.isEmpty()) {
             path.append("&uris=").append(String.join(",", uris));
         }
-        ViewStatsDto[] body = rest.getForEntity(path.toString(), ViewStatsDto[].class, requestEntity).getBody();
-        return body == null ? new ArrayList<>() : List.of(body);
+        return path.toString();
     }
-}
 
+    private record HitKey(String app, String uri, String ip, LocalDateTime second) {
+    }
+}
@@ -1,16 +1,80 @@
 package ru.practicum;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.Setter;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.List;
+
 @Setter
 @Configuration
 public class StatsClientConfig {
 
     @Bean
-    StatsClient statsClient() {
-        return new StatsClient(new RestTemplate());
+    CloseableHttpClient statsHttpClient(@Value("${services.stats-server.connect-timeout:1s}") Duration connectTimeout,
+                                        @Value("${services.stats-server.read-timeout:5s}") Duration readTimeout,
+                                        @Value("${services.stats-server.pool.max-connections:50}") int maxConnections,
+                                        @Value("${services.stats-server.pool.max-per-server:20}") int maxPerServer,
+                                        @Value("${services.stats-server.pool.acquire-timeout:500ms}") Duration acquireTimeout,
+                                        @Value("${services.stats-server.pool.idle-timeout:30s}") Duration idleTimeout) {
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxPerServer)
+                        .setDefaultConnectionConfig(ConnectionConfig.custom()
+                                .setConnectTimeout(Timeout.of(connectTimeout))
+                                .setSocketTimeout(Timeout.of(readTimeout))
+                                .build())
+                        .build())
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+                        .setResponseTimeout(Timeout.of(readTimeout))
+                        .build())
+                .evictIdleConnections(TimeValue.of(idleTimeout))
+                .build();
+    }
+
+    @Bean
+    StatsClient statsClient(@Value("${services.stats-server.urls:${services.stats-server.url:http://localhost:9090}}")
+                            List<String> serverUrls,
+                            @Value("${services.stats-server.hit-attempts:3}") int hitAttempts,
+                            @Value("${services.stats-server.retry-backoff:100ms}") Duration retryBackoff,
+                            @Value("${services.stats-server.hit-buffer.capacity:10000}") int bufferCapacity,
+                            @Value("${services.stats-server.hit-buffer.batch-size:100}") int batchSize,
+                            @Value("${services.stats-server.hit-buffer.flush-interval:100ms}") Duration flushInterval,
+                            @Value("${services.stats-server.hit-buffer.aggregate:false}") boolean aggregateHits,
+                            @Value("${services.stats-server.query.post-threshold:100}") int postThreshold,
+                            @Value("${services.stats-server.query.chunk-size:500}") int chunkSize,
+                            @Value("${services.stats-server.circuit.failure-threshold:5}") int failureThreshold,
+                            @Value("${services.stats-server.circuit.open-duration:10s}") Duration openDuration,
+                            @Value("${services.stats-server.views-cache.enabled:true}") boolean cacheEnabled,
+                            @Value("${services.stats-server.views-cache.ttl:5s}") Duration cacheTtl,
+                            @Value("${services.stats-server.views-cache.max-stale:10m}") Duration cacheMaxStale,
+                            @Value("${services.stats-server.views-cache.local-window:1m}") Duration cacheLocalWindow,
+                            @Value("${services.stats-server.views-cache.max-entries:10000}") int cacheMaxEntries,
+                            CloseableHttpClient statsHttpClient,
+                            ObjectProvider<MeterRegistry> registryProvider) {
+        MeterRegistry registry = registryProvider.getIfAvailable(SimpleMeterRegistry::new);
+        RestTemplate rest = new RestTemplate(new HttpComponentsClientHttpRequestFactory(statsHttpClient));
+        rest.setInterceptors(List.of(new StatsCircuitBreaker(failureThreshold, openDuration, registry),
+                new StatsRequestTimer(registry)));
+        StatsViewsCache viewsCache = new StatsViewsCache(cacheEnabled, cacheTtl, cacheMaxStale, cacheLocalWindow,
+                cacheMaxEntries, registry);
+        return new StatsClient(rest, new StatsShardRing(serverUrls), viewsCache, hitAttempts, retryBackoff,
+                bufferCapacity, batchSize, flushInterval, aggregateHits, postThreshold, chunkSize, registry);
     }
 }
@@ -0,0 +1,121 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+@Slf4j
+public class StatsHitSender implements AutoCloseable {
+    private final BlockingQueue<EndpointHitDto> queue;
+    private final ToIntFunction<List<EndpointHitDto>> transport;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Counter dropped;
+    private final Counter sent;
+    private final Counter failed;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public StatsHitSender(int capacity, int batchSize, Duration flushInterval, MeterRegistry registry,
+                          ToIntFunction<List<EndpointHitDto>> transport) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.transport = transport;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.dropped = registry.counter("stats.client.hits.dropped");
+        this.sent = registry.counter("stats.client.hits.sent");
+        this.failed = registry.counter("stats.client.hits.failed");
+        registry.gauge("stats.client.hits.backlog", queue, BlockingQueue::size);
+        this.worker = new Thread(this::sendLoop, "stats-hit-sender");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public boolean offer(EndpointHitDto hit) {
+        if (running && queue.offer(hit)) {
+            return true;
+        }
+        dropped.increment();
+        log.warn("Буфер отправки статистики переполнен, запись {} отброшена", hit.getHitId());
+        return false;
+    }
+
+    public int backlog() {
+        return queue.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join(flushInterval.toMillis() * 10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<EndpointHitDto> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += batchSize) {
+            send(rest.subList(from, Math.min(rest.size(), from + batchSize)));
+        }
+    }
+
+    private void sendLoop() {
+        List<EndpointHitDto> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                send(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            send(batch);
+        }
+    }
+
+    private void collectBatch(List<EndpointHitDto> batch) throws InterruptedException {
+        EndpointHitDto first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            EndpointHitDto next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void send(List<EndpointHitDto> batch) {
+        int undelivered;
+        try {
+            undelivered = transport.applyAsInt(batch);
+        } catch (RuntimeException e) {
+            undelivered = batch.size();
+            log.error("Не удалось отправить {} записей в сервис статистики", batch.size(), e);
+        }
+        sent.increment(batch.size() - undelivered);
+        failed.increment(undelivered);
+    }
+}
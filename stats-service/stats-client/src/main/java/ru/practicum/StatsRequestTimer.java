@@ -0,0 +1,37 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+public class StatsRequestTimer implements ClientHttpRequestInterceptor {
+    private final MeterRegistry registry;
+
+    public StatsRequestTimer(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        String outcome = "error";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            outcome = String.valueOf(response.getStatusCode().value());
+            return response;
+        } finally {
+            sample.stop(Timer.builder("stats.client.requests")
+                    .tag("method", request.getMethod().name())
+                    .tag("path", request.getURI().getPath())
+                    .tag("status", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+public class StatsShardRing {
+    private static final int VIRTUAL_NODES = 128;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final List<String> shards;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    public StatsShardRing(List<String> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Не задан ни один адрес сервиса статистики");
+        }
+        this.shards = List.copyOf(shards);
+        for (String shard : this.shards) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(shard + "#" + i), shard);
+            }
+        }
+    }
+
+    public List<String> shards() {
+        return shards;
+    }
+
+    public String shardFor(String uri) {
+        if (shards.size() == 1) {
+            return shards.getFirst();
+        }
+        Map.Entry<Long, String> owner = ring.ceilingEntry(hash(uri));
+        return owner == null ? ring.firstEntry().getValue() : owner.getValue();
+    }
+
+    public Map<String, List<String>> partition(List<String> uris) {
+        Map<String, List<String>> byShard = new LinkedHashMap<>();
+        for (String uri : uris) {
+            byShard.computeIfAbsent(shardFor(uri), s -> new ArrayList<>()).add(uri);
+        }
+        return byShard;
+    }
+
+    private static long hash(String value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,9 @@
+package ru.practicum;
+
+import org.springframework.web.client.ResourceAccessException;
+
+public class StatsUnavailableException extends ResourceAccessException {
+    public StatsUnavailableException(String message) {
+        super(message);
+    }
+}
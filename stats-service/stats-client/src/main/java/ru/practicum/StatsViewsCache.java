@@ -0,0 +1,342 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+@Slf4j
+public class StatsViewsCache {
+    private static final int MAX_KNOWN_IPS_PER_URI = 100_000;
+
+    private final Map<Key, Entry> entries;
+    private final Map<Key, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, LocalHit>> localHits = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, KnownIp>> knownIps;
+    private final Map<Key, Map<String, Long>> floors;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration ttl;
+    private final long ttlNanos;
+    private final long maxStaleNanos;
+    private final long localWindowNanos;
+    private final Counter fresh;
+    private final Counter stale;
+    private final Counter misses;
+    private final Counter fallbacks;
+
+    public StatsViewsCache(boolean enabled, Duration ttl, Duration maxStale, Duration localWindow, int maxEntries,
+                           MeterRegistry registry) {
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.ttlNanos = ttl.toNanos();
+        this.maxStaleNanos = maxStale.toNanos();
+        this.localWindowNanos = localWindow.toNanos();
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.knownIps = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, KnownIp>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.floors = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Map<String, Long>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.fresh = registry.counter("stats.client.views-cache.requests", "result", "fresh");
+        this.stale = registry.counter("stats.client.views-cache.requests", "result", "stale");
+        this.misses = registry.counter("stats.client.views-cache.requests", "result", "miss");
+        this.fallbacks = registry.counter("stats.client.views-cache.fallbacks");
+    }
+
+    public boolean accepts(LocalDateTime end, List<String> uris) {
+        return enabled && uris != null && !uris.isEmpty() && !end.isBefore(LocalDateTime.now().minus(ttl));
+    }
+
+    public void recordHit(EndpointHitDto hit) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (localHits.size() >= maxEntries) {
+            localHits.values().forEach(byId -> byId.values().removeIf(local -> now - local.recordedAt >= localWindowNanos));
+            localHits.values().removeIf(Map::isEmpty);
+        }
+        Map<String, LocalHit> hits = localHits.computeIfAbsent(hit.getUri(), uri -> new ConcurrentHashMap<>());
+        hits.values().removeIf(local -> now - local.recordedAt >= localWindowNanos);
+        hits.put(hit.getHitId(), new LocalHit(hit.getApp(), hit.getIp(), hit.getTimestamp(), now));
+    }
+
+    public void delivered(List<EndpointHitDto> hits) {
+        long now = System.nanoTime();
+        for (EndpointHitDto hit : hits) {
+            LocalHit local = localHit(hit);
+            if (local != null) {
+                local.deliveredAt = now;
+            }
+            remember(hit, now);
+        }
+    }
+
+    public void forget(List<EndpointHitDto> hits) {
+        for (EndpointHitDto hit : hits) {
+            Map<String, LocalHit> byId = localHits.get(hit.getUri());
+            if (byId != null) {
+                byId.remove(hit.getHitId());
+            }
+        }
+    }
+
+    public List<ViewStatsDto> get(LocalDateTime start, boolean unique, List<String> uris,
+                                  Function<List<String>, List<ViewStatsDto>> loader) {
+        long now = System.nanoTime();
+        List<ViewStatsDto> result = new ArrayList<>();
+        List<String> refresh = new ArrayList<>();
+        Map<Key, CompletableFuture<Entry>> owned = new LinkedHashMap<>();
+        Map<Key, CompletableFuture<Entry>> pending = new LinkedHashMap<>();
+        for (String uri : new LinkedHashSet<>(uris)) {
+            Key key = new Key(start, unique, uri);
+            Entry entry = lookup(key);
+            long age = entry == null ? Long.MAX_VALUE : now - entry.loadedAt;
+            if (age < ttlNanos) {
+                fresh.increment();
+                result.addAll(view(key, entry));
+            } else if (age < maxStaleNanos) {
+                stale.increment();
+                result.addAll(view(key, entry));
+                if (entry.refreshing.compareAndSet(false, true)) {
+                    refresh.add(uri);
+                }
+            } else {
+                misses.increment();
+                CompletableFuture<Entry> created = new CompletableFuture<>();
+                CompletableFuture<Entry> existing = loading.putIfAbsent(key, created);
+                if (existing == null) {
+                    owned.put(key, created);
+                }
+                pending.put(key, existing == null ? created : existing);
+            }
+        }
+        if (!refresh.isEmpty()) {
+            Thread.ofVirtual().name("stats-views-refresh").start(() -> refresh(start, unique, refresh, loader));
+        }
+        if (!owned.isEmpty()) {
+            load(owned, loader);
+        }
+        pending.forEach((key, entry) -> result.addAll(view(key, join(entry))));
+        return result;
+    }
+
+    private void load(Map<Key, CompletableFuture<Entry>> owned,
+                      Function<List<String>, List<ViewStatsDto>> loader) {
+        long requestedAt = System.nanoTime();
+        try {
+            Map<String, List<ViewStatsDto>> byUri = groupByUri(
+                    loader.apply(owned.keySet().stream().map(Key::uri).toList()), owned.keySet());
+            owned.forEach((key, future) -> future.complete(store(key, byUri.get(key.uri()), requestedAt)));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось получить статистику просмотров, используются последние известные значения: {}",
+                    e.getMessage());
+            owned.forEach((key, future) -> {
+                Entry last = lookup(key);
+                if (last == null) {
+                    future.completeExceptionally(e);
+                } else {
+                    fallbacks.increment();
+                    future.complete(last);
+                }
+            });
+        } finally {
+            owned.forEach(loading::remove);
+        }
+    }
+
+    private void refresh(LocalDateTime start, boolean unique, List<String> uris,
+                         Function<List<String>, List<ViewStatsDto>> loader) {
+        List<Key> keys = uris.stream().map(uri -> new Key(start, unique, uri)).toList();
+        long requestedAt = System.nanoTime();
+        try {
+            Map<String, List<ViewStatsDto>> byUri = groupByUri(loader.apply(uris), keys);
+            keys.forEach(key -> store(key, byUri.get(key.uri()), requestedAt));
+        } catch (RuntimeException e) {
+            log.warn("Не удалось обновить статистику просмотров для {} uri: {}", uris.size(), e.getMessage());
+            keys.forEach(key -> {
+                Entry entry = lookup(key);
+                if (entry != null) {
+                    entry.refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    private Entry lookup(Key key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private Entry store(Key key, List<ViewStatsDto> rows, long requestedAt) {
+        Entry entry = new Entry(List.copyOf(rows), requestedAt);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+        return entry;
+    }
+
+    private List<ViewStatsDto> view(Key key, Entry entry) {
+        Map<String, Long> hits = new LinkedHashMap<>();
+        entry.rows.forEach(row -> hits.merge(row.getApp(), row.getHits(), Long::sum));
+        Map<String, LocalHit> local = localHits.get(key.uri());
+        if (local != null && !local.isEmpty()) {
+            addLocalHits(key, entry.loadedAt, local.values(), hits);
+        }
+        synchronized (floors) {
+            Map<String, Long> floor = floors.get(key);
+            if (floor != null) {
+                floor.forEach((app, count) -> hits.merge(app, count, Math::max));
+            }
+            floors.put(key, Map.copyOf(hits));
+        }
+        List<ViewStatsDto> rows = new ArrayList<>(hits.size());
+        hits.forEach((app, count) -> rows.add(new ViewStatsDto(app, key.uri(), count)));
+        return rows;
+    }
+
+    private void addLocalHits(Key key, long loadedAt, Iterable<LocalHit> local, Map<String, Long> hits) {
+        Map<String, KnownIp> known = Map.of();
+        if (key.unique()) {
+            synchronized (knownIps) {
+                known = knownIps.getOrDefault(key.uri(), Map.of());
+            }
+        }
+        Set<String> counted = new HashSet<>();
+        for (LocalHit hit : local) {
+            if (hit.timestamp != null && hit.timestamp.isBefore(key.start())) {
+                continue;
+            }
+            long deliveredAt = hit.deliveredAt;
+            if (deliveredAt != 0 && deliveredAt - loadedAt < 0) {
+                continue;
+            }
+            if (key.unique()) {
+                String visitor = visitor(hit.app, hit.ip);
+                KnownIp seen = known.get(visitor);
+                if (seen != null && seen.countedBy(key.start(), loadedAt) || !counted.add(visitor)) {
+                    continue;
+                }
+            }
+            hits.merge(hit.app, 1L, Long::sum);
+        }
+    }
+
+    private void remember(EndpointHitDto hit, long deliveredAt) {
+        if (hit.getIp() == null) {
+            return;
+        }
+        Map<String, KnownIp> known;
+        synchronized (knownIps) {
+            known = knownIps.computeIfAbsent(hit.getUri(), uri -> new ConcurrentHashMap<>());
+        }
+        if (known.size() >= MAX_KNOWN_IPS_PER_URI) {
+            known.clear();
+        }
+        known.merge(visitor(hit.getApp(), hit.getIp()), new KnownIp(hit.getTimestamp(), deliveredAt), KnownIp::merge);
+    }
+
+    private static String visitor(String app, String ip) {
+        return app + "\n" + ip;
+    }
+
+    private LocalHit localHit(EndpointHitDto hit) {
+        Map<String, LocalHit> byId = localHits.get(hit.getUri());
+        return byId == null ? null : byId.get(hit.getHitId());
+    }
+
+    private static Map<String, List<ViewStatsDto>> groupByUri(List<ViewStatsDto> stats, Iterable<Key> keys) {
+        Map<String, List<ViewStatsDto>> byUri = new HashMap<>();
+        keys.forEach(key -> byUri.put(key.uri(), new ArrayList<>()));
+        for (ViewStatsDto row : stats) {
+            List<ViewStatsDto> rows = byUri.get(row.getUri());
+            if (rows != null) {
+                rows.add(row);
+            }
+        }
+        return byUri;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Key(LocalDateTime start, boolean unique, String uri) {
+    }
+
+    private record KnownIp(LocalDateTime latest, long firstDeliveredAt) {
+        private KnownIp merge(KnownIp other) {
+            LocalDateTime newest = latest == null || other.latest != null && other.latest.isAfter(latest)
+                    ? other.latest : latest;
+            return new KnownIp(newest, firstDeliveredAt - other.firstDeliveredAt <= 0
+                    ? firstDeliveredAt : other.firstDeliveredAt);
+        }
+
+        private boolean countedBy(LocalDateTime start, long loadedAt) {
+            return firstDeliveredAt - loadedAt < 0 && (latest == null || !latest.isBefore(start));
+        }
+    }
+
+    private static class LocalHit {
+        private final String app;
+        private final String ip;
+        private final LocalDateTime timestamp;
+        private final long recordedAt;
+        private volatile long deliveredAt;
+
+        private LocalHit(String app, String ip, LocalDateTime timestamp, long recordedAt) {
+            this.app = app;
+            this.ip = ip;
+            this.timestamp = timestamp;
+            this.recordedAt = recordedAt;
+        }
+    }
+
+    private static class Entry {
+        private final List<ViewStatsDto> rows;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(List<ViewStatsDto> rows, long loadedAt) {
+            this.rows = rows;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
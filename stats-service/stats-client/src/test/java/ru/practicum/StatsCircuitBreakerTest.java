@@ -0,0 +1,49 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StatsCircuitBreakerTest {
+    private final StatsCircuitBreaker breaker = new StatsCircuitBreaker(2, Duration.ofMinutes(1),
+            new SimpleMeterRegistry());
+
+    @Test
+    void tooManyRequestsDoesNotOpenCircuit() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            assertThat(call(HttpMethod.POST, "/hit/batch", HttpStatus.TOO_MANY_REQUESTS).getStatusCode())
+                    .isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        assertThat(call(HttpMethod.POST, "/hit/batch", HttpStatus.CREATED).getStatusCode())
+                .isEqualTo(HttpStatus.CREATED);
+    }
+
+    @Test
+    void failingWritesDoNotOpenCircuitForReads() throws IOException {
+        call(HttpMethod.POST, "/hit/batch", HttpStatus.SERVICE_UNAVAILABLE);
+        call(HttpMethod.POST, "/hit/batch", HttpStatus.SERVICE_UNAVAILABLE);
+
+        assertThatThrownBy(() -> call(HttpMethod.POST, "/hit/batch", HttpStatus.CREATED))
+                .isInstanceOf(StatsUnavailableException.class);
+        assertThat(call(HttpMethod.GET, "/stats", HttpStatus.OK).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(call(HttpMethod.POST, "/stats/query", HttpStatus.OK).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    private ClientHttpResponse call(HttpMethod method, String path, HttpStatus status)
+            throws IOException {
+        MockClientHttpRequest request = new MockClientHttpRequest(method, URI.create("http://stats-server:9090" + path));
+        return breaker.intercept(request, new byte[0], (req, body) -> new MockClientHttpResponse(new byte[0], status));
+    }
+}
@@ -0,0 +1,209 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.content;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class StatsClientTest {
+    private static final String FIRST = "http://localhost:9090";
+    private static final String SECOND = "http://localhost:9091";
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2024, 2, 1, 0, 0);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final RestTemplate rest = new RestTemplate();
+    private final MockRestServiceServer server = MockRestServiceServer.bindTo(rest).ignoreExpectOrder(true).build();
+    private final StatsShardRing ring = new StatsShardRing(List.of(FIRST, SECOND));
+    private final String firstUri = uriOwnedBy(FIRST);
+    private final String secondUri = uriOwnedBy(SECOND);
+    private final StatsClient client = new StatsClient(rest, ring,
+            new StatsViewsCache(false, Duration.ofSeconds(5), Duration.ofMinutes(10), Duration.ofMinutes(1), 100,
+                    new SimpleMeterRegistry()),
+            3, Duration.ofMillis(10), 100, 10, Duration.ofMillis(20), false, 100, 500, registry);
+
+    @AfterEach
+    void close() {
+        client.close();
+    }
+
+    @Test
+    void routesHitsToOwningShard() {
+        server.expect(requestTo(FIRST + "/hit/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().string(containsString(quoted(firstUri))))
+                .andExpect(content().string(not(containsString(quoted(secondUri)))))
+                .andRespond(withSuccess());
+        server.expect(requestTo(SECOND + "/hit/batch"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(content().string(containsString(quoted(secondUri))))
+                .andExpect(content().string(not(containsString(quoted(firstUri)))))
+                .andRespond(withSuccess());
+
+        assertThat(client.hit(hit(firstUri))).isTrue();
+        assertThat(client.hit(hit(secondUri))).isTrue();
+        client.close();
+
+        server.verify();
+    }
+
+    @Test
+    void senderRetriesBatchOnServerErrorAndBackpressure() {
+        server.expect(requestTo(FIRST + "/hit/batch")).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        server.expect(requestTo(FIRST + "/hit/batch")).andRespond(withStatus(HttpStatus.TOO_MANY_REQUESTS));
+        server.expect(requestTo(FIRST + "/hit/batch")).andRespond(withSuccess());
+
+        assertThat(client.hit(hit(firstUri))).isTrue();
+        client.close();
+
+        server.verify();
+        assertThat(registry.counter("stats.client.hits.sent").count()).isEqualTo(1);
+        assertThat(registry.counter("stats.client.hits.failed").count()).isZero();
+    }
+
+    @Test
+    void senderCountsBatchAsFailedWhenRetriesAreExhausted() {
+        for (int i = 0; i < 3; i++) {
+            server.expect(requestTo(FIRST + "/hit/batch")).andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        }
+
+        assertThat(client.hit(hit(firstUri))).isTrue();
+        client.close();
+
+        server.verify();
+        assertThat(registry.counter("stats.client.hits.sent").count()).isZero();
+        assertThat(registry.counter("stats.client.hits.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void aggregatedHitKeepsItsIdWhenBatchIsRetried() {
+        StatsClient aggregating = new StatsClient(rest, ring,
+                new StatsViewsCache(false, Duration.ofSeconds(5), Duration.ofMinutes(10), Duration.ofMinutes(1), 100,
+                        new SimpleMeterRegistry()),
+                3, Duration.ofMillis(10), 100, 10, Duration.ofSeconds(10), true, 100, 500, registry);
+        String mergedId = UUID.nameUUIDFromBytes("hit-1\nhit-2".getBytes(StandardCharsets.UTF_8)).toString();
+        server.expect(requestTo(FIRST + "/hit/batch"))
+                .andExpect(content().string(containsString(quoted(mergedId))))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        server.expect(requestTo(FIRST + "/hit/batch"))
+                .andExpect(content().string(containsString(quoted(mergedId))))
+                .andExpect(content().string(containsString("\"weight\":2")))
+                .andRespond(withSuccess());
+
+        LocalDateTime timestamp = LocalDateTime.now().withNano(0);
+        EndpointHitDto second = hit(firstUri);
+        second.setHitId("hit-2");
+        second.setTimestamp(timestamp);
+        EndpointHitDto first = hit(firstUri);
+        first.setHitId("hit-1");
+        first.setTimestamp(timestamp.plusNanos(500_000_000));
+        assertThat(aggregating.hit(second)).isTrue();
+        assertThat(aggregating.hit(first)).isTrue();
+        aggregating.close();
+
+        server.verify();
+    }
+
+    @Test
+    void mergesStatsFromShardsAndSortsByHits() {
+        server.expect(requestTo(startsWith(FIRST + "/stats")))
+                .andRespond(withSuccess(json(firstUri, 3), MediaType.APPLICATION_JSON));
+        server.expect(requestTo(startsWith(SECOND + "/stats")))
+                .andRespond(withSuccess(json(secondUri, 7), MediaType.APPLICATION_JSON));
+
+        List<ViewStatsDto> stats = client.getStats(START, END, true, List.of(firstUri, secondUri));
+
+        server.verify();
+        assertThat(stats).extracting(ViewStatsDto::getUri).containsExactly(secondUri, firstUri);
+        assertThat(stats).extracting(ViewStatsDto::getHits).containsExactly(7L, 3L);
+    }
+
+    @Test
+    void sumsRowsReturnedByEveryShardWithoutFilter() {
+        server.expect(requestTo(startsWith(FIRST + "/stats")))
+                .andRespond(withSuccess(json(firstUri, 2), MediaType.APPLICATION_JSON));
+        server.expect(requestTo(startsWith(SECOND + "/stats")))
+                .andRespond(withSuccess(json(firstUri, 5), MediaType.APPLICATION_JSON));
+
+        List<ViewStatsDto> stats = client.getStats(START, END, false, null);
+
+        server.verify();
+        assertThat(stats).singleElement().extracting(ViewStatsDto::getHits).isEqualTo(7L);
+    }
+
+    @Test
+    void streamsNdjsonRowsFromEveryShardInServerOrder() {
+        server.expect(requestTo(startsWith(FIRST + "/stats")))
+                .andExpect(header(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON_VALUE))
+                .andRespond(withSuccess(row(firstUri, 5) + "\n", MediaType.APPLICATION_NDJSON));
+        server.expect(requestTo(startsWith(SECOND + "/stats")))
+                .andExpect(header(HttpHeaders.ACCEPT, MediaType.APPLICATION_NDJSON_VALUE))
+                .andRespond(withSuccess(row(secondUri, 4) + "\n" + row("/events/other", 2) + "\n",
+                        MediaType.APPLICATION_NDJSON));
+        List<ViewStatsDto> rows = new ArrayList<>();
+
+        client.streamStats(START, END, false, List.of(firstUri, secondUri), rows::add);
+
+        server.verify();
+        assertThat(rows).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactlyInAnyOrder(tuple(firstUri, 5L), tuple(secondUri, 4L), tuple("/events/other", 2L));
+        assertThat(rows).filteredOn(row -> !row.getUri().equals(firstUri))
+                .extracting(ViewStatsDto::getUri)
+                .containsExactly(secondUri, "/events/other");
+    }
+
+    private String uriOwnedBy(String shard) {
+        return IntStream.range(0, 1000)
+                .mapToObj(i -> "/events/" + i)
+                .filter(uri -> ring.shardFor(uri).equals(shard))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static EndpointHitDto hit(String uri) {
+        return EndpointHitDto.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("192.168.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static String quoted(String uri) {
+        return "\"" + uri + "\"";
+    }
+
+    private static String json(String uri, long hits) {
+        return "[" + row(uri, hits) + "]";
+    }
+
+    private static String row(String uri, long hits) {
+        return "{\"app\":\"ewm-main-service\",\"uri\":\"" + uri + "\",\"hits\":" + hits + "}";
+    }
+}
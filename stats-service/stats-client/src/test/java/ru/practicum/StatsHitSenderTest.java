@@ -0,0 +1,111 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsHitSenderTest {
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(50);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final ToIntFunction<List<EndpointHitDto>> blockingTransport = batch -> {
+        sending.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        batch.forEach(hit -> delivered.add(hit.getHitId()));
+        return 0;
+    };
+
+    @Test
+    void dropsHitsWhenBufferIsFull() throws InterruptedException {
+        StatsHitSender sender = new StatsHitSender(2, 1, FLUSH_INTERVAL, registry, blockingTransport);
+        assertThat(sender.offer(hit("hit-0"))).isTrue();
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(sender.offer(hit("hit-1"))).isTrue();
+        assertThat(sender.offer(hit("hit-2"))).isTrue();
+        assertThat(sender.offer(hit("hit-3"))).isFalse();
+
+        assertThat(sender.backlog()).isEqualTo(2);
+        assertThat(registry.counter("stats.client.hits.dropped").count()).isEqualTo(1);
+        assertThat(registry.get("stats.client.hits.backlog").gauge().value()).isEqualTo(2);
+        release.countDown();
+        sender.close();
+        assertThat(delivered).containsExactlyInAnyOrder("hit-0", "hit-1", "hit-2");
+    }
+
+    @Test
+    void flushesBufferedHitsOnClose() throws InterruptedException {
+        StatsHitSender sender = new StatsHitSender(100, 2, FLUSH_INTERVAL, registry, blockingTransport);
+        assertThat(sender.offer(hit("hit-0"))).isTrue();
+        assertThat(sending.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 5; i++) {
+            assertThat(sender.offer(hit("hit-" + i))).isTrue();
+        }
+
+        Thread closing = new Thread(sender::close);
+        closing.start();
+        awaitState(closing, Thread.State.TIMED_WAITING);
+        release.countDown();
+        closing.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(closing.isAlive()).isFalse();
+        assertThat(delivered).containsExactlyInAnyOrder("hit-0", "hit-1", "hit-2", "hit-3", "hit-4", "hit-5");
+        assertThat(sender.backlog()).isZero();
+        assertThat(registry.counter("stats.client.hits.sent").count()).isEqualTo(6);
+    }
+
+    @Test
+    void rejectsHitsAfterClose() {
+        StatsHitSender sender = new StatsHitSender(10, 5, FLUSH_INTERVAL, registry, batch -> 0);
+        sender.close();
+
+        assertThat(sender.offer(hit("hit-0"))).isFalse();
+        assertThat(registry.counter("stats.client.hits.dropped").count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsUndeliveredHitsAsFailed() {
+        StatsHitSender sender = new StatsHitSender(10, 5, FLUSH_INTERVAL, registry, batch -> {
+            throw new IllegalStateException("stats-server недоступен");
+        });
+        sender.offer(hit("hit-0"));
+        sender.offer(hit("hit-1"));
+        sender.close();
+
+        assertThat(registry.counter("stats.client.hits.failed").count()).isEqualTo(2);
+        assertThat(registry.counter("stats.client.hits.sent").count()).isZero();
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(thread.getState()).isEqualTo(state);
+    }
+
+    private static EndpointHitDto hit(String hitId) {
+        return EndpointHitDto.builder()
+                .hitId(hitId)
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("192.168.0.1")
+                .build();
+    }
+}
@@ -0,0 +1,142 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsViewsCacheTest {
+    private static final String APP = "ewm-main-service";
+    private static final String URI = "/events/1";
+    private static final Duration LOCAL_WINDOW = Duration.ofMillis(200);
+
+    private final StatsViewsCache cache = new StatsViewsCache(true, Duration.ofMinutes(1), Duration.ofMinutes(2),
+            LOCAL_WINDOW, 100, new SimpleMeterRegistry());
+    private final LocalDateTime start = LocalDateTime.now().minusDays(1);
+    private final AtomicLong serverHits = new AtomicLong(1);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<List<String>, List<ViewStatsDto>> loader = uris -> {
+        loads.incrementAndGet();
+        return List.of(new ViewStatsDto(APP, URI, serverHits.get()));
+    };
+
+    @Test
+    void viewersOwnHitIsCountedBeforeDelivery() {
+        assertThat(views(true)).isEqualTo(1);
+
+        cache.recordHit(hit("hit-1", "192.168.0.2"));
+
+        assertThat(views(true)).isEqualTo(2);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void undeliveredHitsFromOneIpAreCountedOnce() {
+        assertThat(views(true)).isEqualTo(1);
+
+        cache.recordHit(hit("hit-1", "192.168.0.2"));
+        cache.recordHit(hit("hit-2", "192.168.0.2"));
+
+        assertThat(views(true)).isEqualTo(2);
+    }
+
+    @Test
+    void returningVisitorDoesNotInflateUniqueViews() {
+        assertThat(views(true)).isEqualTo(1);
+
+        EndpointHitDto first = hit("hit-1", "192.168.0.2");
+        cache.recordHit(first);
+        serverHits.set(2);
+        cache.delivered(List.of(first));
+        assertThat(views(true)).isEqualTo(2);
+
+        cache.recordHit(hit("hit-2", "192.168.0.2"));
+        assertThat(views(true)).isEqualTo(2);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void visitorCountedByServerIsNotCountedAgainAfterLocalWindow() throws InterruptedException {
+        EndpointHitDto first = hit("hit-1", "192.168.0.2");
+        cache.recordHit(first);
+        cache.delivered(List.of(first));
+        serverHits.set(2);
+        assertThat(views(true)).isEqualTo(2);
+
+        Thread.sleep(LOCAL_WINDOW.toMillis() * 2);
+        cache.recordHit(hit("hit-2", "192.168.0.2"));
+
+        assertThat(views(true)).isEqualTo(2);
+    }
+
+    @Test
+    void viewsNeverDropWhileServerLagsBehindDeliveredHits() {
+        StatsViewsCache uncached = new StatsViewsCache(true, Duration.ZERO, Duration.ZERO, LOCAL_WINDOW, 100,
+                new SimpleMeterRegistry());
+        assertThat(uncached.get(start, false, List.of(URI), loader).get(0).getHits()).isEqualTo(1);
+
+        EndpointHitDto hit = hit("hit-1", "192.168.0.2");
+        uncached.recordHit(hit);
+        assertThat(uncached.get(start, false, List.of(URI), loader).get(0).getHits()).isEqualTo(2);
+        uncached.delivered(List.of(hit));
+
+        assertThat(uncached.get(start, false, List.of(URI), loader).get(0).getHits()).isEqualTo(2);
+        assertThat(loads).hasValue(3);
+    }
+
+    @Test
+    void uniqueViewsDoNotDropWhenLocalWindowExpires() throws InterruptedException {
+        assertThat(views(true)).isEqualTo(1);
+        cache.recordHit(hit("hit-1", "192.168.0.2"));
+        assertThat(views(true)).isEqualTo(2);
+
+        Thread.sleep(LOCAL_WINDOW.toMillis() * 2);
+
+        assertThat(views(true)).isEqualTo(2);
+    }
+
+    @Test
+    void newVisitorIsReadBackAfterDelivery() {
+        assertThat(views(true)).isEqualTo(1);
+
+        EndpointHitDto hit = hit("hit-1", "192.168.0.2");
+        cache.recordHit(hit);
+        serverHits.set(2);
+        cache.delivered(List.of(hit));
+
+        assertThat(views(true)).isEqualTo(2);
+        assertThat(views(true)).isEqualTo(2);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void localHitsAreOverlaidOnTotalViews() {
+        assertThat(views(false)).isEqualTo(1);
+
+        cache.recordHit(hit("hit-1", "192.168.0.1"));
+
+        assertThat(views(false)).isEqualTo(2);
+        assertThat(loads).hasValue(1);
+    }
+
+    private long views(boolean unique) {
+        return cache.get(start, unique, List.of(URI), loader).get(0).getHits();
+    }
+
+    private static EndpointHitDto hit(String hitId, String ip) {
+        return EndpointHitDto.builder()
+                .hitId(hitId)
+                .app(APP)
+                .uri(URI)
+                .ip(ip)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
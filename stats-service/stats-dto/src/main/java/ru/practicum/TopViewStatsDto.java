@@ -0,0 +1,18 @@
+package ru.practicum;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopViewStatsDto {
+    private String app;
+    private String uri;
+    private Long hits;
+    private Long error;
+    private Boolean guaranteed;
+}
@@ -0,0 +1,19 @@
+package ru.practicum;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DatabaseDialect {
+    private final boolean postgres;
+
+    public DatabaseDialect(JdbcTemplate jdbcTemplate) {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        this.postgres = "PostgreSQL".equals(product);
+    }
+
+    public boolean isPostgres() {
+        return postgres;
+    }
+}
@@ -0,0 +1,164 @@
+package ru.practicum;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage.type", havingValue = "jdbc", matchIfMissing = true)
+@DependsOn("hitSchemaMigration")
+public class HitBackfillJob {
+    private static final String ROLLUP = HitRollupRepository.BACKFILL_TARGET;
+    private static final String SKETCH = HitSketchRepository.BACKFILL_TARGET;
+    private static final String TOP = HitTopRepository.BACKFILL_TARGET;
+    private static final String NEXT_HIT = "SELECT MIN(timestamp) FROM hits WHERE timestamp >= ? AND timestamp < ?";
+    private static final String NEXT_ROLLUP = "SELECT MIN(bucket) FROM hits_rollup WHERE bucket >= ? AND bucket < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HitRollupRepository rollupRepository;
+    private final HitSketchRepository sketchRepository;
+    private final HitTopRepository topRepository;
+    private final HitPartitionManager partitionManager;
+    private final boolean enabled;
+    private final Duration slice;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("hit-backfill").daemon().factory());
+
+    public HitBackfillJob(JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          HitRollupRepository rollupRepository,
+                          HitSketchRepository sketchRepository,
+                          HitTopRepository topRepository,
+                          HitPartitionManager partitionManager,
+                          @Value("${stats.backfill.enabled:true}") boolean enabled,
+                          @Value("${stats.backfill.slice:1h}") Duration slice) {
+        if (slice.compareTo(Duration.ofMinutes(1)) < 0) {
+            throw new IllegalArgumentException("Шаг построения агрегатов должен быть не меньше минуты");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.rollupRepository = rollupRepository;
+        this.sketchRepository = sketchRepository;
+        this.topRepository = topRepository;
+        this.partitionManager = partitionManager;
+        this.enabled = enabled;
+        this.slice = slice.truncatedTo(ChronoUnit.MINUTES);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                partitionManager.awaitMigration();
+                backfill();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                log.error("Построение агрегатов по сохранённым просмотрам прервано, будет продолжено после перезапуска", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public void backfill() {
+        backfillTarget(ROLLUP, rollupRepository::backfillBoundary, NEXT_HIT, rollupRepository::backfill,
+                rollupRepository::rebuild);
+        backfillTarget(SKETCH, sketchRepository::backfillBoundary, NEXT_HIT,
+                (from, to, maxId) -> sketchRepository.backfill(from, to), null);
+        backfillTarget(TOP, topRepository::backfillBoundary, NEXT_ROLLUP,
+                (from, to, maxId) -> topRepository.backfill(from, to), null);
+    }
+
+    private void backfillTarget(String target, Supplier<LocalDateTime> boundary, String nextSql, Slice step,
+                                BiFunction<LocalDateTime, LocalDateTime, Integer> edge) {
+        Watermark watermark = watermark(target, boundary);
+        LocalDateTime from = watermark.backfilledBefore();
+        long slices = 0;
+        long rows = 0;
+        while (from == null || from.isBefore(watermark.until())) {
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            Timestamp next = jdbcTemplate.queryForObject(nextSql, Timestamp.class,
+                    Timestamp.valueOf(from == null ? LocalDateTime.of(1, 1, 1, 0, 0) : from),
+                    Timestamp.valueOf(watermark.until()));
+            LocalDateTime sliceStart = next == null ? null : next.toLocalDateTime().truncatedTo(ChronoUnit.MINUTES);
+            LocalDateTime sliceEnd = sliceStart == null || !sliceStart.plus(slice).isBefore(watermark.until())
+                    ? watermark.until() : sliceStart.plus(slice);
+            rows += Objects.requireNonNull(transactionTemplate.execute(status -> {
+                int written = sliceStart == null ? 0 : step.apply(sliceStart, sliceEnd, watermark.maxId());
+                jdbcTemplate.update("UPDATE hits_backfill SET backfilled_before = ? WHERE target = ?",
+                        Timestamp.valueOf(sliceEnd), target);
+                return written;
+            }));
+            from = sliceEnd;
+            slices++;
+        }
+        LocalDateTime edgeEnd = watermark.until().plusMinutes(1);
+        if (edge != null && from.isBefore(edgeEnd)) {
+            rows += Objects.requireNonNull(transactionTemplate.execute(status -> {
+                int written = edge.apply(watermark.until(), edgeEnd);
+                jdbcTemplate.update("UPDATE hits_backfill SET backfilled_before = ? WHERE target = ?",
+                        Timestamp.valueOf(edgeEnd), target);
+                return written;
+            }));
+        }
+        if (rows > 0) {
+            log.info("Построены агрегаты {} по сохранённым просмотрам до {}, шагов: {}, записей: {}",
+                    target, watermark.until(), slices, rows);
+        }
+    }
+
+    private Watermark watermark(String target, Supplier<LocalDateTime> boundary) {
+        List<Watermark> stored = jdbcTemplate.query("SELECT backfill_until, max_id, backfilled_before " +
+                        "FROM hits_backfill WHERE target = ?",
+                (rs, rowNum) -> new Watermark(rs.getTimestamp("backfill_until").toLocalDateTime(), rs.getLong("max_id"),
+                        rs.getTimestamp("backfilled_before") == null
+                                ? null : rs.getTimestamp("backfilled_before").toLocalDateTime()),
+                target);
+        if (!stored.isEmpty()) {
+            return stored.getFirst();
+        }
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM hits", Long.class);
+        Watermark created = new Watermark(boundary.get(), maxId == null ? 0 : maxId, null);
+        jdbcTemplate.update("INSERT INTO hits_backfill (target, backfill_until, max_id) VALUES (?, ?, ?)",
+                target, Timestamp.valueOf(created.until()), created.maxId());
+        return created;
+    }
+
+    @FunctionalInterface
+    private interface Slice {
+        int apply(LocalDateTime from, LocalDateTime to, long maxId);
+    }
+
+    private record Watermark(LocalDateTime until, long maxId, LocalDateTime backfilledBefore) {
+    }
+}
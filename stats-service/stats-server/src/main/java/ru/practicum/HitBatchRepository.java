@@ -0,0 +1,9 @@
+package ru.practicum;
+
+import ru.practicum.model.EndpointHit;
+
+import java.util.List;
+
+public interface HitBatchRepository {
+    void saveAllInBatch(List<EndpointHit> hits);
+}
@@ -0,0 +1,29 @@
+package ru.practicum;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class HitBatchRepositoryImpl implements HitBatchRepository {
+    private static final String INSERT_HIT = "INSERT INTO hits (app, uri_id, ip, timestamp, weight) VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    @Value("${stats.ingest.batch-size:1000}")
+    private int batchSize;
+
+    @Override
+    public void saveAllInBatch(List<EndpointHit> hits) {
+        jdbcTemplate.batchUpdate(INSERT_HIT, hits, batchSize, (ps, hit) -> {
+            ps.setString(1, hit.getApp());
+            ps.setInt(2, hit.getUriId());
+            ps.setBytes(3, IpAddresses.toBytes(hit.getIp()));
+            ps.setTimestamp(4, Timestamp.valueOf(hit.getTimestamp()));
+            ps.setInt(5, hit.getWeight());
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package ru.practicum;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage.type", havingValue = "jdbc", matchIfMissing = true)
+@DependsOn("hitSchemaMigration")
+public class HitCompactionJob {
+    private static final String HOURLY = "hourly";
+    private static final String DAILY = "daily";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HitRetentionPolicy retention;
+    private final HitRollupRepository rollupRepository;
+    private final HitSketchRepository sketchRepository;
+    private final HitTopRepository topRepository;
+    private final HitPartitionManager partitionManager;
+
+    public HitCompactionJob(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            HitRetentionPolicy retention,
+                            HitRollupRepository rollupRepository,
+                            HitSketchRepository sketchRepository,
+                            HitTopRepository topRepository,
+                            HitPartitionManager partitionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.rollupRepository = rollupRepository;
+        this.sketchRepository = sketchRepository;
+        this.topRepository = topRepository;
+        this.partitionManager = partitionManager;
+    }
+
+    @Scheduled(cron = "${stats.compaction.cron:0 30 0 * * *}")
+    public void compact() {
+        if (!retention.isEnabled()) {
+            return;
+        }
+        if (!isBackfilled()) {
+            log.warn("Сжатие отложено: агрегаты по сохранённым просмотрам ещё не построены");
+            return;
+        }
+        LocalDate rawHorizon = retention.rawHorizon().toLocalDate();
+        partitionManager.dropPartitionsBefore(rawHorizon);
+        compactTier(HOURLY, rawHorizon, List.of("SELECT MIN(timestamp) FROM hits", "SELECT MIN(bucket) FROM hits_rollup"),
+                (from, to) -> {
+                    int removed = jdbcTemplate.update("DELETE FROM hits WHERE timestamp < ?", Timestamp.valueOf(to));
+                    return removed + rollupRepository.compact(from, to, TimeBucket.HOUR);
+                });
+        compactTier(DAILY, retention.dailyHorizon().toLocalDate(), List.of("SELECT MIN(bucket) FROM hits_rollup",
+                        "SELECT MIN(bucket) FROM hits_ip_sketch", "SELECT MIN(bucket) FROM hits_top_sketch"),
+                (from, to) -> rollupRepository.compact(from, to, TimeBucket.DAY)
+                        + sketchRepository.compact(from, to, TimeBucket.DAY)
+                        + topRepository.compact(from, to, TimeBucket.DAY));
+    }
+
+    /**
+     * Пока агрегаты строятся по сохранённым просмотрам, запросы за прошлые периоды читают исходные записи,
+     * а в ещё не обработанных интервалах агрегатов нет вовсе, поэтому удалять и сжимать что-либо рано.
+     */
+    private boolean isBackfilled() {
+        if (rollupRepository.rawBefore() != null) {
+            return false;
+        }
+        Long done = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits_backfill " +
+                        "WHERE target IN (?, ?) AND backfilled_before >= backfill_until", Long.class,
+                HitSketchRepository.BACKFILL_TARGET, HitTopRepository.BACKFILL_TARGET);
+        return done != null && done == 2;
+    }
+
+    private void compactTier(String tier, LocalDate horizon, List<String> earliestQueries,
+                             BiFunction<LocalDateTime, LocalDateTime, Integer> step) {
+        LocalDate from = compactedBefore(tier, earliestQueries);
+        if (from == null || !from.isBefore(horizon)) {
+            return;
+        }
+        long removed = 0;
+        for (LocalDate day = from; day.isBefore(horizon); day = day.plusDays(1)) {
+            LocalDateTime dayStart = day.atStartOfDay();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            removed += Objects.requireNonNull(transactionTemplate.execute(status -> {
+                int count = step.apply(dayStart, dayEnd);
+                saveCompactedBefore(tier, dayEnd);
+                return count;
+            }));
+        }
+        log.info("Сжатие уровня {} за период с {} по {} завершено, освобождено записей: {}", tier, from, horizon, removed);
+    }
+
+    private LocalDate compactedBefore(String tier, List<String> earliestQueries) {
+        List<Timestamp> stored = jdbcTemplate.queryForList(
+                "SELECT compacted_before FROM hits_compaction WHERE tier = ?", Timestamp.class, tier);
+        if (!stored.isEmpty()) {
+            return stored.getFirst().toLocalDateTime().toLocalDate();
+        }
+        LocalDate earliest = null;
+        for (String query : earliestQueries) {
+            Timestamp found = jdbcTemplate.queryForObject(query, Timestamp.class);
+            if (found != null && (earliest == null || found.toLocalDateTime().toLocalDate().isBefore(earliest))) {
+                earliest = found.toLocalDateTime().toLocalDate();
+            }
+        }
+        return earliest;
+    }
+
+    private void saveCompactedBefore(String tier, LocalDateTime before) {
+        Timestamp timestamp = Timestamp.valueOf(before);
+        int updated = jdbcTemplate.update("UPDATE hits_compaction SET compacted_before = ? WHERE tier = ?", timestamp, tier);
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO hits_compaction (tier, compacted_before) VALUES (?, ?)", tier, timestamp);
+        }
+    }
+}
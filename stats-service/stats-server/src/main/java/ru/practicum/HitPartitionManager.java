@@ -0,0 +1,242 @@
+package ru.practicum;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+@DependsOn("hitSchemaMigration")
+public class HitPartitionManager {
+    private static final String PARTITION_PREFIX = "hits_p";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final String SELECT_PARTITIONS = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "JOIN pg_class p ON p.oid = i.inhparent " +
+            "WHERE p.relname = 'hits'";
+    private static final List<String> DERIVED_TABLES = List.of("hits_rollup", "hits_ip_sketch", "hits_top_sketch");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int daysAhead;
+    private final int retentionDays;
+    private final CompletableFuture<Void> migration = new CompletableFuture<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("hit-partition-migration").daemon().factory());
+
+    public HitPartitionManager(JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               DatabaseDialect dialect,
+                               @Value("${stats.partition.days-ahead:7}") int daysAhead,
+                               @Value("${stats.partition.retention-days:0}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = dialect.isPostgres();
+        this.daysAhead = daysAhead;
+        this.retentionDays = retentionDays;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled || !hasUnpartitioned()) {
+            migration.complete(null);
+        } else {
+            reserveUnpartitionedIds();
+        }
+        maintain();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (migration.isDone()) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                if (migrateUnpartitioned()) {
+                    migration.complete(null);
+                } else {
+                    migration.cancel(false);
+                }
+            } catch (RuntimeException e) {
+                log.error("Перенос несекционированной таблицы hits прерван, будет продолжен после перезапуска", e);
+                migration.completeExceptionally(e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ждёт переноса просмотров из несекционированной таблицы: пока он идёт, в hits есть не все записи,
+     * и строить по ним агрегаты рано.
+     */
+    public void awaitMigration() throws InterruptedException {
+        try {
+            migration.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Перенос несекционированной таблицы hits не завершён", e.getCause());
+        }
+    }
+
+    @Scheduled(cron = "${stats.partition.cron:0 5 0 * * *}")
+    public synchronized void maintain() {
+        LocalDate today = LocalDate.now();
+        LocalDate cutoff = retentionCutoff();
+        if (enabled) {
+            createPartitions(today, today.plusDays(daysAhead));
+            partitionDefault(cutoff);
+        }
+        if (cutoff != null) {
+            dropPartitionsBefore(cutoff);
+            deleteDerivedBefore(cutoff);
+        }
+    }
+
+    private LocalDate retentionCutoff() {
+        return retentionDays > 0 ? LocalDate.now().minusDays(retentionDays) : null;
+    }
+
+    private void partitionDefault(LocalDate cutoff) {
+        Set<String> existing = findPartitions();
+        RowMapper<LocalDate> day = (rs, rowNum) -> rs.getDate(1).toLocalDate();
+        List<LocalDate> days = cutoff == null
+                ? jdbcTemplate.query("SELECT DISTINCT CAST(timestamp AS DATE) FROM hits_default", day)
+                : jdbcTemplate.query("SELECT DISTINCT CAST(timestamp AS DATE) FROM hits_default WHERE timestamp >= ?",
+                day, Timestamp.valueOf(cutoff.atStartOfDay()));
+        for (LocalDate missing : days) {
+            String name = PARTITION_PREFIX + missing.format(PARTITION_SUFFIX);
+            if (!existing.contains(name)) {
+                createPartition(name, missing);
+            }
+        }
+    }
+
+    private void createPartitions(LocalDate from, LocalDate to) {
+        Set<String> existing = findPartitions();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            String name = PARTITION_PREFIX + day.format(PARTITION_SUFFIX);
+            if (!existing.contains(name)) {
+                createPartition(name, day);
+            }
+        }
+    }
+
+    private void createPartition(String name, LocalDate day) {
+        Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE hits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update("WITH moved AS (DELETE FROM hits_default " +
+                    "WHERE timestamp >= ? AND timestamp < ? RETURNING *) " +
+                    "INSERT INTO " + name + " SELECT * FROM moved", from, to);
+            jdbcTemplate.execute("ALTER TABLE hits ATTACH PARTITION " + name +
+                    " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')");
+            log.info("Создана секция {}, перенесено записей из секции по умолчанию: {}", name, moved);
+        });
+    }
+
+    public void dropPartitionsBefore(LocalDate cutoff) {
+        if (!enabled) {
+            int removed = jdbcTemplate.update("DELETE FROM hits WHERE timestamp < ?",
+                    Timestamp.valueOf(cutoff.atStartOfDay()));
+            if (removed > 0) {
+                log.info("Удалено записей по политике хранения: {}", removed);
+            }
+            return;
+        }
+        for (String name : findPartitions()) {
+            LocalDate day = LocalDate.parse(name.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX);
+            if (day.isBefore(cutoff)) {
+                jdbcTemplate.execute("DROP TABLE " + name);
+                log.info("Удалена секция {} по политике хранения", name);
+            }
+        }
+        int removed = jdbcTemplate.update("DELETE FROM hits_default WHERE timestamp < ?",
+                Timestamp.valueOf(cutoff.atStartOfDay()));
+        if (removed > 0) {
+            log.info("Из секции по умолчанию удалено записей по политике хранения: {}", removed);
+        }
+    }
+
+    private void deleteDerivedBefore(LocalDate cutoff) {
+        Timestamp before = Timestamp.valueOf(cutoff.atStartOfDay());
+        int removed = Objects.requireNonNull(transactionTemplate.execute(status -> DERIVED_TABLES.stream()
+                .mapToInt(table -> jdbcTemplate.update("DELETE FROM " + table + " WHERE bucket < ?", before))
+                .sum()));
+        if (removed > 0) {
+            log.info("Удалено агрегатов по политике хранения: {}", removed);
+        }
+    }
+
+    private Set<String> findPartitions() {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class).stream()
+                .filter(name -> name.startsWith(PARTITION_PREFIX))
+                .collect(Collectors.toSet());
+    }
+
+    private boolean hasUnpartitioned() {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                "SELECT to_regclass('hits_unpartitioned') IS NOT NULL", Boolean.class));
+    }
+
+    private void reserveUnpartitionedIds() {
+        jdbcTemplate.execute("SELECT setval('hits_seq', GREATEST((SELECT MAX(id) FROM hits_unpartitioned), " +
+                "(SELECT last_value FROM hits_seq), 1))");
+    }
+
+    private boolean migrateUnpartitioned() {
+        List<LocalDate> range = jdbcTemplate.query("SELECT MIN(timestamp), MAX(timestamp) FROM hits_unpartitioned",
+                (rs, rowNum) -> rs.getTimestamp(1) == null ? null : List.of(
+                        rs.getTimestamp(1).toLocalDateTime().toLocalDate(),
+                        rs.getTimestamp(2).toLocalDateTime().toLocalDate())).getFirst();
+        LocalDate cutoff = retentionCutoff();
+        if (range != null && (cutoff == null || !range.get(1).isBefore(cutoff))) {
+            LocalDate first = cutoff != null && range.get(0).isBefore(cutoff) ? cutoff : range.get(0);
+            synchronized (this) {
+                createPartitions(first, range.get(1));
+            }
+            long copied = 0;
+            for (LocalDate day = first; !day.isAfter(range.get(1)); day = day.plusDays(1)) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                Timestamp from = Timestamp.valueOf(day.atStartOfDay());
+                Timestamp to = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+                copied += Objects.requireNonNull(transactionTemplate.execute(status -> jdbcTemplate.update(
+                        "INSERT INTO hits (id, app, uri_id, ip, timestamp) " +
+                                "SELECT id, app, uri_id, ip, timestamp FROM hits_unpartitioned " +
+                                "WHERE timestamp >= ? AND timestamp < ? ON CONFLICT DO NOTHING", from, to)));
+            }
+            log.info("Перенесено записей из несекционированной таблицы hits: {}", copied);
+        }
+        jdbcTemplate.execute("DROP TABLE hits_unpartitioned");
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package ru.practicum;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Component
+public class HitRetentionPolicy {
+    private final boolean enabled;
+    private final int hourlyAfterDays;
+    private final int dailyAfterDays;
+
+    public HitRetentionPolicy(@Value("${stats.compaction.enabled:false}") boolean enabled,
+                              @Value("${stats.compaction.hourly-after-days:30}") int hourlyAfterDays,
+                              @Value("${stats.compaction.daily-after-days:180}") int dailyAfterDays) {
+        if (hourlyAfterDays < 1 || dailyAfterDays < hourlyAfterDays) {
+            throw new IllegalArgumentException("Срок перехода к дневным агрегатам должен быть не меньше срока " +
+                    "перехода к часовым, а тот - положительным");
+        }
+        this.enabled = enabled;
+        this.hourlyAfterDays = hourlyAfterDays;
+        this.dailyAfterDays = dailyAfterDays;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LocalDateTime rawHorizon() {
+        return enabled ? LocalDate.now().minusDays(hourlyAfterDays).atStartOfDay() : null;
+    }
+
+    public LocalDateTime dailyHorizon() {
+        return enabled ? LocalDate.now().minusDays(dailyAfterDays).atStartOfDay() : null;
+    }
+
+    public LocalDateTime alignStart(LocalDateTime start, ChronoUnit unit) {
+        if (isCompacted(start)) {
+            return start;
+        }
+        LocalDateTime aligned = start.truncatedTo(unit);
+        return aligned.isBefore(start) ? aligned.plus(1, unit) : aligned;
+    }
+
+    public LocalDateTime alignEnd(LocalDateTime end, ChronoUnit unit) {
+        return isCompacted(end) ? end : end.truncatedTo(unit);
+    }
+
+    private boolean isCompacted(LocalDateTime dateTime) {
+        LocalDateTime horizon = rawHorizon();
+        return horizon != null && dateTime.isBefore(horizon);
+    }
+}
@@ -0,0 +1,173 @@
+package ru.practicum;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+@Repository
+@DependsOn({"hitSchemaMigration", "hitPartitionManager"})
+public class HitRollupRepository {
+    public static final String BACKFILL_TARGET = "rollup";
+    private static final String UPSERT_POSTGRES = "INSERT INTO hits_rollup (app, uri_id, bucket, hits) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (app, uri_id, bucket) DO UPDATE SET hits = hits_rollup.hits + EXCLUDED.hits";
+    private static final String UPSERT_STANDARD = "MERGE INTO hits_rollup t " +
+            "USING (VALUES (CAST(? AS VARCHAR(128)), CAST(? AS INTEGER), CAST(? AS TIMESTAMP), CAST(? AS BIGINT))) " +
+            "AS s(app, uri_id, bucket, hits) " +
+            "ON t.app = s.app AND t.uri_id = s.uri_id AND t.bucket = s.bucket " +
+            "WHEN MATCHED THEN UPDATE SET hits = t.hits + s.hits " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri_id, bucket, hits) VALUES (s.app, s.uri_id, s.bucket, s.hits)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final UriDictionary uriDictionary;
+    private final HitRetentionPolicy retention;
+    private final String upsertSql;
+
+    public HitRollupRepository(JdbcTemplate jdbcTemplate,
+                               DatabaseDialect dialect,
+                               UriDictionary uriDictionary,
+                               HitRetentionPolicy retention,
+                               @Value("${stats.query.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.uriDictionary = uriDictionary;
+        this.retention = retention;
+        JdbcTemplate queryTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        queryTemplate.setFetchSize(fetchSize);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(queryTemplate);
+        this.upsertSql = dialect.isPostgres() ? UPSERT_POSTGRES : UPSERT_STANDARD;
+    }
+
+    public LocalDateTime backfillBoundary() {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(bucket) FROM hits_rollup", Timestamp.class);
+        return first == null ? LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES) : first.toLocalDateTime();
+    }
+
+    public int backfill(LocalDateTime from, LocalDateTime to, long maxId) {
+        List<Object[]> args = aggregateHits(from, to, maxId);
+        jdbcTemplate.batchUpdate(upsertSql, args);
+        return args.size();
+    }
+
+    public int rebuild(LocalDateTime from, LocalDateTime to) {
+        jdbcTemplate.update("DELETE FROM hits_rollup WHERE bucket >= ? AND bucket < ?",
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        List<Object[]> args = aggregateHits(from, to, Long.MAX_VALUE);
+        jdbcTemplate.batchUpdate(upsertSql, args);
+        return args.size();
+    }
+
+    public LocalDateTime rawBefore() {
+        List<Timestamp[]> stored = jdbcTemplate.query("SELECT backfill_until, backfilled_before FROM hits_backfill " +
+                        "WHERE target = ?", (rs, rowNum) -> new Timestamp[]{rs.getTimestamp("backfill_until"),
+                        rs.getTimestamp("backfilled_before")}, BACKFILL_TARGET);
+        if (stored.isEmpty()) {
+            return backfillBoundary().plusMinutes(1);
+        }
+        LocalDateTime complete = stored.getFirst()[0].toLocalDateTime().plusMinutes(1);
+        Timestamp backfilledBefore = stored.getFirst()[1];
+        return backfilledBefore != null && !backfilledBefore.toLocalDateTime().isBefore(complete) ? null : complete;
+    }
+
+    private List<Object[]> aggregateHits(LocalDateTime from, LocalDateTime to, long maxId) {
+        return jdbcTemplate.query("SELECT app, uri_id, DATE_TRUNC('minute', timestamp) AS point, " +
+                        "SUM(weight) AS hits FROM hits WHERE timestamp >= ? AND timestamp < ? AND id <= ? " +
+                        "GROUP BY app, uri_id, point ORDER BY app, uri_id, point",
+                (rs, rowNum) -> new Object[]{rs.getString("app"), rs.getInt("uri_id"), rs.getTimestamp("point"),
+                        rs.getLong("hits")},
+                Timestamp.valueOf(from), Timestamp.valueOf(to), maxId);
+    }
+
+    public void increment(List<EndpointHit> hits) {
+        Map<RollupKey, Long> counts = new TreeMap<>(RollupKey.ORDER);
+        for (EndpointHit hit : hits) {
+            RollupKey key = new RollupKey(hit.getApp(), hit.getUriId(), hit.getTimestamp().truncatedTo(ChronoUnit.MINUTES));
+            counts.merge(key, (long) hit.getWeight(), Long::sum);
+        }
+        List<Object[]> args = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> args.add(new Object[]{key.app(), key.uriId(), Timestamp.valueOf(key.bucket()), count}));
+        jdbcTemplate.batchUpdate(upsertSql, args);
+    }
+
+    public int compact(LocalDateTime from, LocalDateTime to, TimeBucket bucket) {
+        Timestamp fromTimestamp = Timestamp.valueOf(from);
+        Timestamp toTimestamp = Timestamp.valueOf(to);
+        List<Object[]> args = jdbcTemplate.query("SELECT app, uri_id, DATE_TRUNC('" + bucket.sqlName() + "', bucket) AS point, " +
+                        "SUM(hits) AS hits FROM hits_rollup WHERE bucket >= ? AND bucket < ? " +
+                        "GROUP BY app, uri_id, point ORDER BY app, uri_id, point",
+                (rs, rowNum) -> new Object[]{rs.getString("app"), rs.getInt("uri_id"), rs.getTimestamp("point"),
+                        rs.getLong("hits")},
+                fromTimestamp, toTimestamp);
+        int removed = jdbcTemplate.update("DELETE FROM hits_rollup WHERE bucket >= ? AND bucket < ?",
+                fromTimestamp, toTimestamp);
+        jdbcTemplate.batchUpdate(upsertSql, args);
+        return removed - args.size();
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<ViewStatsDto> stats = new ArrayList<>();
+        streamStats(start, end, uris, stats::add);
+        return stats;
+    }
+
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Consumer<ViewStatsDto> consumer) {
+        LocalDateTime fullStart = retention.alignStart(start, ChronoUnit.MINUTES);
+        LocalDateTime rawBefore = rawBefore();
+        if (rawBefore != null && fullStart.isBefore(rawBefore)) {
+            fullStart = rawBefore;
+        }
+        LocalDateTime fullEnd = retention.alignEnd(end, ChronoUnit.MINUTES);
+        boolean filtered = uris != null && !uris.isEmpty();
+        List<Integer> uriIds = filtered ? uriDictionary.findIds(uris) : List.of();
+        if (filtered && uriIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("uriIds", uriIds);
+        String uriFilter = filtered ? " AND uri_id IN (:uriIds)" : "";
+        String sql;
+        if (fullStart.isBefore(fullEnd)) {
+            params.addValue("fullStart", Timestamp.valueOf(fullStart))
+                    .addValue("fullEnd", Timestamp.valueOf(fullEnd));
+            sql = "SELECT s.app, u.uri, SUM(s.hits) AS hits FROM (" +
+                    "SELECT app, uri_id, hits FROM hits_rollup " +
+                    "WHERE bucket >= :fullStart AND bucket < :fullEnd" + uriFilter +
+                    " UNION ALL " +
+                    "SELECT app, uri_id, SUM(weight) AS hits FROM hits " +
+                    "WHERE ((timestamp >= :start AND timestamp < :fullStart) " +
+                    "OR (timestamp >= :fullEnd AND timestamp <= :end))" + uriFilter +
+                    " GROUP BY app, uri_id" +
+                    ") s JOIN uris u ON u.id = s.uri_id GROUP BY s.app, u.id, u.uri ORDER BY 3 DESC";
+        } else {
+            sql = "SELECT s.app, u.uri, s.hits FROM (" +
+                    "SELECT app, uri_id, SUM(weight) AS hits FROM hits " +
+                    "WHERE timestamp >= :start AND timestamp <= :end" + uriFilter +
+                    " GROUP BY app, uri_id" +
+                    ") s JOIN uris u ON u.id = s.uri_id ORDER BY 3 DESC";
+        }
+        namedJdbcTemplate.query(sql, params, (RowCallbackHandler) rs ->
+                consumer.accept(new ViewStatsDto(rs.getString("app"), rs.getString("uri"), rs.getLong("hits"))));
+    }
+
+    private record RollupKey(String app, Integer uriId, LocalDateTime bucket) {
+        private static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::app)
+                .thenComparing(RollupKey::uriId)
+                .thenComparing(RollupKey::bucket);
+    }
+}
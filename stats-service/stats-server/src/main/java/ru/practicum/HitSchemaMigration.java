@@ -0,0 +1,119 @@
+package ru.practicum;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Component
+public class HitSchemaMigration {
+    private static final List<String> HIT_TABLES = List.of("hits", "hits_unpartitioned");
+    private static final List<String> BUCKET_TABLES = List.of("hits_rollup", "hits_ip_sketch");
+    private static final String IP_MAPPING_TABLE = "hits_ip_migration";
+    private static final int IP_MAPPING_BATCH = 1000;
+    private static final String SELECT_COLUMN_TYPE = "SELECT LOWER(data_type) FROM information_schema.columns " +
+            "WHERE LOWER(table_name) = ? AND LOWER(column_name) = ? AND table_schema = CURRENT_SCHEMA";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean postgres;
+
+    public HitSchemaMigration(JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              DatabaseDialect dialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.postgres = dialect.isPostgres();
+    }
+
+    @PostConstruct
+    public void migrate() {
+        for (String table : HIT_TABLES) {
+            migrateUri(table, false);
+            migrateIp(table);
+        }
+        for (String table : BUCKET_TABLES) {
+            migrateUri(table, true);
+        }
+        jdbcTemplate.execute("ALTER TABLE hits ADD COLUMN IF NOT EXISTS weight INTEGER DEFAULT 1 NOT NULL");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS hits_uri_timestamp_idx ON hits (uri_id, timestamp)");
+    }
+
+    private void migrateUri(String table, boolean bucketed) {
+        if (columnType(table, "uri") == null) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO uris (uri) SELECT DISTINCT t.uri FROM " + table + " t " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM uris u WHERE u.uri = t.uri)");
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN uri_id INTEGER");
+            int updated = jdbcTemplate.update("UPDATE " + table + " t " +
+                    "SET uri_id = (SELECT u.id FROM uris u WHERE u.uri = t.uri)");
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN uri_id SET NOT NULL");
+            if (bucketed) {
+                jdbcTemplate.execute(postgres
+                        ? "ALTER TABLE " + table + " DROP CONSTRAINT " + table + "_pkey"
+                        : "ALTER TABLE " + table + " DROP PRIMARY KEY");
+            }
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN uri");
+            if (bucketed) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " ADD PRIMARY KEY (app, uri_id, bucket)");
+            }
+            log.info("Таблица {} переведена на словарь uri, обновлено записей: {}", table, updated);
+        });
+    }
+
+    private void migrateIp(String table) {
+        String type = columnType(table, "ip");
+        if (type == null || !type.contains("char")) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + IP_MAPPING_TABLE);
+            jdbcTemplate.execute("CREATE TABLE " + IP_MAPPING_TABLE + " (ip VARCHAR PRIMARY KEY, ip_bin BYTEA NOT NULL)");
+            int addresses = fillIpMapping(table);
+            jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN ip_bin BYTEA");
+            jdbcTemplate.update(postgres
+                    ? "UPDATE " + table + " t SET ip_bin = m.ip_bin FROM " + IP_MAPPING_TABLE + " m WHERE m.ip = t.ip"
+                    : "UPDATE " + table + " t SET ip_bin = " +
+                    "(SELECT m.ip_bin FROM " + IP_MAPPING_TABLE + " m WHERE m.ip = t.ip)");
+            jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN ip_bin SET NOT NULL");
+            jdbcTemplate.execute("ALTER TABLE " + table + " DROP COLUMN ip");
+            jdbcTemplate.execute("ALTER TABLE " + table + " RENAME COLUMN ip_bin TO ip");
+            jdbcTemplate.execute("DROP TABLE " + IP_MAPPING_TABLE);
+            log.info("Таблица {} переведена на двоичное хранение ip, различных адресов: {}", table, addresses);
+        });
+    }
+
+    private int fillIpMapping(String table) {
+        String insert = "INSERT INTO " + IP_MAPPING_TABLE + " (ip, ip_bin) VALUES (?, ?)";
+        List<Object[]> batch = new ArrayList<>(IP_MAPPING_BATCH);
+        int[] total = {0};
+        jdbcTemplate.query("SELECT DISTINCT ip FROM " + table, rs -> {
+            String ip = rs.getString(1);
+            batch.add(new Object[]{ip, IpAddresses.toBytes(ip)});
+            if (batch.size() == IP_MAPPING_BATCH) {
+                jdbcTemplate.batchUpdate(insert, batch);
+                total[0] += batch.size();
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(insert, batch);
+            total[0] += batch.size();
+        }
+        return total[0];
+    }
+
+    private String columnType(String table, String column) {
+        return jdbcTemplate.queryForList(SELECT_COLUMN_TYPE, String.class, table, column).stream()
+                .findFirst()
+                .orElse(null);
+    }
+}
@@ -0,0 +1,195 @@
+package ru.practicum;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Repository
+@DependsOn({"hitSchemaMigration", "hitPartitionManager"})
+public class HitSketchRepository {
+    public static final String BACKFILL_TARGET = "sketch";
+    private static final String INSERT_POSTGRES = "INSERT INTO hits_ip_sketch (app, uri_id, bucket, sketch) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (app, uri_id, bucket) DO NOTHING";
+    private static final String INSERT_STANDARD = "MERGE INTO hits_ip_sketch t " +
+            "USING (VALUES (CAST(? AS VARCHAR(128)), CAST(? AS INTEGER), CAST(? AS TIMESTAMP), CAST(? AS BYTEA))) " +
+            "AS s(app, uri_id, bucket, sketch) " +
+            "ON t.app = s.app AND t.uri_id = s.uri_id AND t.bucket = s.bucket " +
+            "WHEN NOT MATCHED THEN INSERT (app, uri_id, bucket, sketch) VALUES (s.app, s.uri_id, s.bucket, s.sketch)";
+    private static final String SELECT_FOR_UPDATE = "SELECT sketch FROM hits_ip_sketch " +
+            "WHERE app = ? AND uri_id = ? AND bucket = ? FOR UPDATE";
+    private static final String UPDATE = "UPDATE hits_ip_sketch SET sketch = ? WHERE app = ? AND uri_id = ? AND bucket = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final UriDictionary uriDictionary;
+    private final HitRetentionPolicy retention;
+    private final String insertSql;
+    private final int precision;
+
+    public HitSketchRepository(JdbcTemplate jdbcTemplate,
+                               DatabaseDialect dialect,
+                               UriDictionary uriDictionary,
+                               HitRetentionPolicy retention,
+                               @Value("${stats.sketch.precision:12}") int precision) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.uriDictionary = uriDictionary;
+        this.retention = retention;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.insertSql = dialect.isPostgres() ? INSERT_POSTGRES : INSERT_STANDARD;
+        this.precision = precision;
+    }
+
+    public LocalDateTime backfillBoundary() {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(bucket) FROM hits_ip_sketch", Timestamp.class);
+        return (first == null ? LocalDateTime.now() : first.toLocalDateTime()).truncatedTo(ChronoUnit.HOURS).plusHours(1);
+    }
+
+    public int backfill(LocalDateTime from, LocalDateTime to) {
+        Map<SketchKey, HyperLogLog> sketches = new TreeMap<>(SketchKey.ORDER);
+        jdbcTemplate.query("SELECT app, uri_id, ip, timestamp FROM hits WHERE timestamp >= ? AND timestamp < ?",
+                (RowCallbackHandler) rs -> sketches
+                        .computeIfAbsent(new SketchKey(rs.getString("app"), rs.getInt("uri_id"),
+                                        rs.getTimestamp("timestamp").toLocalDateTime().truncatedTo(ChronoUnit.HOURS)),
+                                k -> new HyperLogLog(precision))
+                        .add(IpAddresses.fromBytes(rs.getBytes("ip"))),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        sketches.forEach(this::store);
+        return sketches.size();
+    }
+
+    public void merge(List<EndpointHit> hits) {
+        Map<SketchKey, HyperLogLog> sketches = new TreeMap<>(SketchKey.ORDER);
+        for (EndpointHit hit : hits) {
+            SketchKey key = new SketchKey(hit.getApp(), hit.getUriId(), hit.getTimestamp().truncatedTo(ChronoUnit.HOURS));
+            sketches.computeIfAbsent(key, k -> new HyperLogLog(precision)).add(hit.getIp());
+        }
+        sketches.forEach(this::store);
+    }
+
+    public int compact(LocalDateTime from, LocalDateTime to, TimeBucket bucket) {
+        Timestamp fromTimestamp = Timestamp.valueOf(from);
+        Timestamp toTimestamp = Timestamp.valueOf(to);
+        Map<SketchKey, HyperLogLog> sketches = new TreeMap<>(SketchKey.ORDER);
+        jdbcTemplate.query("SELECT app, uri_id, bucket, sketch FROM hits_ip_sketch WHERE bucket >= ? AND bucket < ?",
+                (RowCallbackHandler) rs -> {
+                    SketchKey key = new SketchKey(rs.getString("app"), rs.getInt("uri_id"),
+                            bucket.truncate(rs.getTimestamp("bucket").toLocalDateTime()));
+                    HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+                    sketches.merge(key, sketch, (a, b) -> {
+                        a.merge(b);
+                        return a;
+                    });
+                }, fromTimestamp, toTimestamp);
+        int removed = jdbcTemplate.update("DELETE FROM hits_ip_sketch WHERE bucket >= ? AND bucket < ?",
+                fromTimestamp, toTimestamp);
+        sketches.forEach(this::store);
+        return removed - sketches.size();
+    }
+
+    public Map<StatsKey, HyperLogLog> getSketches(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        LocalDateTime fullStart = retention.alignStart(start, ChronoUnit.HOURS);
+        LocalDateTime fullEnd = retention.alignEnd(end, ChronoUnit.HOURS);
+        if (fullStart.isAfter(fullEnd)) {
+            fullStart = end;
+            fullEnd = end;
+        }
+        boolean filtered = uris != null && !uris.isEmpty();
+        List<Integer> uriIds = filtered ? uriDictionary.findIds(uris) : List.of();
+        if (filtered && uriIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        String uriFilter = filtered ? " AND s.uri_id IN (:uriIds)" : "";
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("fullStart", Timestamp.valueOf(fullStart))
+                .addValue("fullEnd", Timestamp.valueOf(fullEnd))
+                .addValue("uriIds", uriIds);
+        Map<StatsKey, HyperLogLog> merged = new HashMap<>();
+        namedJdbcTemplate.query("SELECT s.app, u.uri, s.sketch FROM hits_ip_sketch s " +
+                "JOIN uris u ON u.id = s.uri_id " +
+                "WHERE s.bucket >= :fullStart AND s.bucket < :fullEnd" + uriFilter, params, rs -> {
+            HyperLogLog sketch = HyperLogLog.fromBytes(rs.getBytes("sketch"));
+            merged.merge(new StatsKey(rs.getString("app"), rs.getString("uri")), sketch, (a, b) -> {
+                a.merge(b);
+                return a;
+            });
+        });
+        namedJdbcTemplate.query("SELECT DISTINCT s.app, u.uri, s.ip FROM hits s " +
+                "JOIN uris u ON u.id = s.uri_id " +
+                "WHERE ((s.timestamp >= :start AND s.timestamp < :fullStart) " +
+                "OR (s.timestamp >= :fullEnd AND s.timestamp <= :end))" + uriFilter, params, rs -> {
+            merged.computeIfAbsent(new StatsKey(rs.getString("app"), rs.getString("uri")), k -> new HyperLogLog(precision))
+                    .add(IpAddresses.fromBytes(rs.getBytes("ip")));
+        });
+        return merged;
+    }
+
+    public List<ViewStatsPointDto> getTimeSeries(LocalDateTime start, LocalDateTime end, TimeBucket bucket,
+                                                 List<String> uris) {
+        boolean filtered = uris != null && !uris.isEmpty();
+        List<Integer> uriIds = filtered ? uriDictionary.findIds(uris) : List.of();
+        if (filtered && uriIds.isEmpty()) {
+            return List.of();
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("uriIds", uriIds);
+        Map<PointKey, HyperLogLog> merged = new TreeMap<>(PointKey.ORDER);
+        namedJdbcTemplate.query("SELECT s.app, u.uri, s.bucket, s.sketch FROM hits_ip_sketch s " +
+                "JOIN uris u ON u.id = s.uri_id " +
+                "WHERE s.bucket >= :start AND s.bucket < :end" + (filtered ? " AND s.uri_id IN (:uriIds)" : ""),
+                params, rs -> {
+            PointKey key = new PointKey(rs.getString("app"), rs.getString("uri"),
+                    bucket.truncate(rs.getTimestamp("bucket").toLocalDateTime()));
+            merged.merge(key, HyperLogLog.fromBytes(rs.getBytes("sketch")), (a, b) -> {
+                a.merge(b);
+                return a;
+            });
+        });
+        return merged.entrySet().stream()
+                .map(e -> new ViewStatsPointDto(e.getKey().app(), e.getKey().uri(), e.getKey().point(),
+                        e.getValue().estimate()))
+                .toList();
+    }
+
+    private void store(SketchKey key, HyperLogLog sketch) {
+        Timestamp bucket = Timestamp.valueOf(key.bucket());
+        int inserted = jdbcTemplate.update(insertSql, key.app(), key.uriId(), bucket, sketch.toBytes());
+        if (inserted > 0) {
+            return;
+        }
+        byte[] stored = jdbcTemplate.queryForObject(SELECT_FOR_UPDATE, byte[].class, key.app(), key.uriId(), bucket);
+        HyperLogLog merged = HyperLogLog.fromBytes(stored);
+        merged.merge(sketch);
+        jdbcTemplate.update(UPDATE, merged.toBytes(), key.app(), key.uriId(), bucket);
+    }
+
+    private record SketchKey(String app, Integer uriId, LocalDateTime bucket) {
+        private static final Comparator<SketchKey> ORDER = Comparator.comparing(SketchKey::app)
+                .thenComparing(SketchKey::uriId)
+                .thenComparing(SketchKey::bucket);
+    }
+
+    private record PointKey(String app, String uri, LocalDateTime point) {
+        private static final Comparator<PointKey> ORDER = Comparator.comparing(PointKey::app)
+                .thenComparing(PointKey::uri)
+                .thenComparing(PointKey::point);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.practicum;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+@Repository
+public class HitTimeSeriesRepository {
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final UriDictionary uriDictionary;
+    private final HitRetentionPolicy retention;
+    private final HitRollupRepository rollupRepository;
+
+    public HitTimeSeriesRepository(JdbcTemplate jdbcTemplate,
+                                   UriDictionary uriDictionary,
+                                   HitRetentionPolicy retention,
+                                   HitRollupRepository rollupRepository,
+                                   @Value("${stats.query.fetch-size:1000}") int fetchSize) {
+        JdbcTemplate queryTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        queryTemplate.setFetchSize(fetchSize);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(queryTemplate);
+        this.uriDictionary = uriDictionary;
+        this.retention = retention;
+        this.rollupRepository = rollupRepository;
+    }
+
+    public List<ViewStatsPointDto> getTimeSeries(LocalDateTime start, LocalDateTime end, TimeBucket bucket,
+                                                 List<String> uris) {
+        LocalDateTime fullStart = retention.alignStart(start, ChronoUnit.MINUTES);
+        LocalDateTime rawBefore = rollupRepository.rawBefore();
+        if (rawBefore != null && fullStart.isBefore(rawBefore)) {
+            fullStart = rawBefore;
+        }
+        LocalDateTime fullEnd = retention.alignEnd(end, ChronoUnit.MINUTES);
+        MapSqlParameterSource params = params(start, end, uris);
+        if (params == null) {
+            return List.of();
+        }
+        String uriFilter = uriFilter(uris);
+        String trunc = "DATE_TRUNC('" + bucket.sqlName() + "', ";
+        String source;
+        if (fullStart.isBefore(fullEnd)) {
+            params.addValue("fullStart", Timestamp.valueOf(fullStart))
+                    .addValue("fullEnd", Timestamp.valueOf(fullEnd));
+            source = "SELECT app, uri_id, " + trunc + "bucket) AS point, hits FROM hits_rollup " +
+                    "WHERE bucket >= :fullStart AND bucket < :fullEnd" + uriFilter +
+                    " UNION ALL " +
+                    "SELECT app, uri_id, " + trunc + "timestamp) AS point, weight AS hits FROM hits " +
+                    "WHERE ((timestamp >= :start AND timestamp < :fullStart) " +
+                    "OR (timestamp >= :fullEnd AND timestamp <= :end))" + uriFilter;
+        } else {
+            source = "SELECT app, uri_id, " + trunc + "timestamp) AS point, weight AS hits FROM hits " +
+                    "WHERE timestamp >= :start AND timestamp <= :end" + uriFilter;
+        }
+        return query("SELECT s.app, u.uri, s.point, SUM(s.hits) AS hits FROM (" + source + ") s " +
+                "JOIN uris u ON u.id = s.uri_id " +
+                "GROUP BY s.app, u.id, u.uri, s.point " +
+                "ORDER BY s.app, u.uri, s.point", params);
+    }
+
+    public List<ViewStatsPointDto> getTimeSeriesUniqueIp(LocalDateTime start, LocalDateTime end, TimeBucket bucket,
+                                                         List<String> uris) {
+        MapSqlParameterSource params = params(start, end, uris);
+        if (params == null) {
+            return List.of();
+        }
+        return query("SELECT s.app, u.uri, s.point, s.hits FROM (" +
+                "SELECT app, uri_id, DATE_TRUNC('" + bucket.sqlName() + "', timestamp) AS point, " +
+                "COUNT(DISTINCT ip) AS hits FROM hits " +
+                "WHERE timestamp >= :start AND timestamp <= :end" + uriFilter(uris) +
+                " GROUP BY app, uri_id, point" +
+                ") s JOIN uris u ON u.id = s.uri_id " +
+                "ORDER BY s.app, u.uri, s.point", params);
+    }
+
+    private MapSqlParameterSource params(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        List<Integer> uriIds = List.of();
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = uriDictionary.findIds(uris);
+            if (uriIds.isEmpty()) {
+                return null;
+            }
+        }
+        return new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("uriIds", uriIds);
+    }
+
+    private static String uriFilter(List<String> uris) {
+        return uris != null && !uris.isEmpty() ? " AND uri_id IN (:uriIds)" : "";
+    }
+
+    private List<ViewStatsPointDto> query(String sql, MapSqlParameterSource params) {
+        return namedJdbcTemplate.query(sql, params, (rs, rowNum) -> new ViewStatsPointDto(rs.getString("app"),
+                rs.getString("uri"), rs.getTimestamp("point").toLocalDateTime(), rs.getLong("hits")));
+    }
+}
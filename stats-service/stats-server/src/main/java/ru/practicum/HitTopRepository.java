@@ -0,0 +1,108 @@
+package ru.practicum;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Repository
+@DependsOn({"hitSchemaMigration", "hitRollupRepository"})
+public class HitTopRepository {
+    public static final String BACKFILL_TARGET = "top";
+    private static final String INSERT_POSTGRES = "INSERT INTO hits_top_sketch (bucket, sketch) VALUES (?, ?) " +
+            "ON CONFLICT (bucket) DO NOTHING";
+    private static final String INSERT_STANDARD = "MERGE INTO hits_top_sketch t " +
+            "USING (VALUES (CAST(? AS TIMESTAMP), CAST(? AS BYTEA))) AS s(bucket, sketch) " +
+            "ON t.bucket = s.bucket " +
+            "WHEN NOT MATCHED THEN INSERT (bucket, sketch) VALUES (s.bucket, s.sketch)";
+    private static final String SELECT_FOR_UPDATE = "SELECT sketch FROM hits_top_sketch WHERE bucket = ? FOR UPDATE";
+    private static final String UPDATE = "UPDATE hits_top_sketch SET sketch = ? WHERE bucket = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertSql;
+    private final int capacity;
+
+    public HitTopRepository(JdbcTemplate jdbcTemplate,
+                            DatabaseDialect dialect,
+                            @Value("${stats.top.capacity:1000}") int capacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.insertSql = dialect.isPostgres() ? INSERT_POSTGRES : INSERT_STANDARD;
+        this.capacity = capacity;
+    }
+
+    public LocalDateTime backfillBoundary() {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(bucket) FROM hits_top_sketch", Timestamp.class);
+        return first == null ? LocalDateTime.now().truncatedTo(ChronoUnit.HOURS) : first.toLocalDateTime();
+    }
+
+    public int backfill(LocalDateTime from, LocalDateTime to) {
+        Map<LocalDateTime, SpaceSaving> sketches = new TreeMap<>();
+        jdbcTemplate.query("SELECT r.app, u.uri, r.bucket, r.hits FROM hits_rollup r " +
+                "JOIN uris u ON u.id = r.uri_id WHERE r.bucket >= ? AND r.bucket < ?", (RowCallbackHandler) rs ->
+                sketches.computeIfAbsent(rs.getTimestamp("bucket").toLocalDateTime().truncatedTo(ChronoUnit.HOURS),
+                                b -> new SpaceSaving(capacity))
+                        .add(new StatsKey(rs.getString("app"), rs.getString("uri")), rs.getLong("hits")),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        sketches.forEach(this::store);
+        return sketches.size();
+    }
+
+    public void merge(List<EndpointHit> hits) {
+        Map<LocalDateTime, Map<StatsKey, Long>> counts = new TreeMap<>();
+        for (EndpointHit hit : hits) {
+            counts.computeIfAbsent(hit.getTimestamp().truncatedTo(ChronoUnit.HOURS), b -> new HashMap<>())
+                    .merge(new StatsKey(hit.getApp(), hit.getUri()), (long) hit.getWeight(), Long::sum);
+        }
+        counts.forEach((bucket, byKey) -> {
+            SpaceSaving sketch = new SpaceSaving(capacity);
+            byKey.forEach(sketch::add);
+            store(bucket, sketch);
+        });
+    }
+
+    public int compact(LocalDateTime from, LocalDateTime to, TimeBucket bucket) {
+        Timestamp fromTimestamp = Timestamp.valueOf(from);
+        Timestamp toTimestamp = Timestamp.valueOf(to);
+        Map<LocalDateTime, SpaceSaving> sketches = new TreeMap<>();
+        jdbcTemplate.query("SELECT bucket, sketch FROM hits_top_sketch WHERE bucket >= ? AND bucket < ?",
+                (RowCallbackHandler) rs -> sketches.computeIfAbsent(
+                        bucket.truncate(rs.getTimestamp("bucket").toLocalDateTime()), b -> new SpaceSaving(capacity))
+                        .merge(SpaceSaving.fromBytes(rs.getBytes("sketch"))),
+                fromTimestamp, toTimestamp);
+        int removed = jdbcTemplate.update("DELETE FROM hits_top_sketch WHERE bucket >= ? AND bucket < ?",
+                fromTimestamp, toTimestamp);
+        sketches.forEach(this::store);
+        return removed - sketches.size();
+    }
+
+    public SpaceSaving getSketch(LocalDateTime from, LocalDateTime to) {
+        SpaceSaving merged = new SpaceSaving(capacity);
+        jdbcTemplate.query("SELECT sketch FROM hits_top_sketch WHERE bucket >= ? AND bucket < ?",
+                (RowCallbackHandler) rs -> merged.merge(SpaceSaving.fromBytes(rs.getBytes("sketch"))),
+                Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return merged;
+    }
+
+    private void store(LocalDateTime bucket, SpaceSaving sketch) {
+        Timestamp timestamp = Timestamp.valueOf(bucket);
+        int inserted = jdbcTemplate.update(insertSql, timestamp, sketch.toBytes());
+        if (inserted > 0) {
+            return;
+        }
+        byte[] stored = jdbcTemplate.queryForObject(SELECT_FOR_UPDATE, byte[].class, timestamp);
+        SpaceSaving merged = SpaceSaving.fromBytes(stored);
+        merged.merge(sketch);
+        jdbcTemplate.update(UPDATE, merged.toBytes(), timestamp);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practicum;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.storage.HitStorage;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Slf4j
+@Component
+public class HotWindowAggregator {
+    private static final long EVICTION_LAG_SECONDS = 60;
+
+    private final ConcurrentNavigableMap<Long, Map<StatsKey, Cell>> slots = new ConcurrentSkipListMap<>();
+    private final HitStorage storage;
+    private final long spanSeconds;
+
+    public HotWindowAggregator(HitStorage storage, @Value("${stats.hot-window.minutes:10}") int minutes) {
+        this.storage = storage;
+        this.spanSeconds = minutes * 60L;
+    }
+
+    @PostConstruct
+    public void warmUp() {
+        if (!isEnabled()) {
+            return;
+        }
+        LocalDateTime from = toDateTime(coveredFromSecond());
+        storage.scan(from, this::record);
+        log.info("Окно последних просмотров заполнено записями начиная с {}", from);
+    }
+
+    public boolean isEnabled() {
+        return spanSeconds > 0;
+    }
+
+    public LocalDateTime coveredFrom() {
+        return toDateTime(coveredFromSecond());
+    }
+
+    public void record(List<EndpointHit> hits) {
+        if (!isEnabled()) {
+            return;
+        }
+        hits.forEach(this::record);
+    }
+
+    public Map<StatsKey, WindowStats> collect(LocalDateTime start, LocalDateTime end, Collection<String> uris) {
+        Set<String> uriFilter = uris == null || uris.isEmpty() ? null : new HashSet<>(uris);
+        long from = toSecond(start) + (start.getNano() > 0 ? 1 : 0);
+        long to = toSecond(end);
+        Map<StatsKey, WindowStats> result = new HashMap<>();
+        if (from > to) {
+            return result;
+        }
+        for (Map<StatsKey, Cell> slot : slots.subMap(from, true, to, true).values()) {
+            slot.forEach((key, cell) -> {
+                if (uriFilter == null || uriFilter.contains(key.uri())) {
+                    WindowStats stats = result.computeIfAbsent(key, k -> new WindowStats());
+                    stats.hits += cell.hits.sum();
+                    stats.ips.addAll(cell.ips);
+                }
+            });
+        }
+        return result;
+    }
+
+    @Scheduled(fixedDelayString = "${stats.hot-window.eviction-interval:1000}")
+    public void evict() {
+        slots.headMap(coveredFromSecond() - EVICTION_LAG_SECONDS).clear();
+    }
+
+    private void record(EndpointHit hit) {
+        long second = toSecond(hit.getTimestamp());
+        if (second < coveredFromSecond()) {
+            return;
+        }
+        Cell cell = slots.computeIfAbsent(second, s -> new ConcurrentHashMap<>())
+                .computeIfAbsent(new StatsKey(hit.getApp(), hit.getUri()), k -> new Cell());
+        cell.hits.add(hit.getWeight());
+        cell.ips.add(hit.getIp());
+    }
+
+    private long coveredFromSecond() {
+        return toSecond(LocalDateTime.now()) - spanSeconds;
+    }
+
+    private static long toSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toDateTime(long second) {
+        return LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC);
+    }
+
+    @Getter
+    public static class WindowStats {
+        private long hits;
+        private final Set<String> ips = new HashSet<>();
+    }
+
+    private static class Cell {
+        private final LongAdder hits = new LongAdder();
+        private final Set<String> ips = ConcurrentHashMap.newKeySet();
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+public final class IpAddresses {
+    private static final int IPV4_LENGTH = 4;
+    private static final int IPV6_LENGTH = 16;
+    private static final String OCTET = "(25[0-5]|2[0-4]\\d|1\\d\\d|[1-9]?\\d)";
+    private static final Pattern IPV4 = Pattern.compile(OCTET + "(\\." + OCTET + "){3}");
+
+    private IpAddresses() {
+    }
+
+    public static byte[] parseLiteral(String ip) {
+        if (ip == null || ip.isEmpty()) {
+            return null;
+        }
+        boolean v4 = IPV4.matcher(ip).matches();
+        boolean v6 = ip.indexOf(':') >= 0 && ip.chars().allMatch(c -> Character.digit(c, 16) >= 0 || c == '.' || c == ':');
+        if (!v4 && !v6) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(ip).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    public static String canonical(String ip) {
+        byte[] address = parseLiteral(ip);
+        return address == null ? ip : fromBytes(address);
+    }
+
+    public static byte[] toBytes(String ip) {
+        byte[] address = parseLiteral(ip);
+        if (address != null) {
+            return address;
+        }
+        byte[] text = ip.getBytes(StandardCharsets.UTF_8);
+        int length = text.length + 1;
+        if (length == IPV4_LENGTH || length == IPV6_LENGTH) {
+            length++;
+        }
+        byte[] encoded = new byte[length];
+        System.arraycopy(text, 0, encoded, 1, text.length);
+        return encoded;
+    }
+
+    public static String fromBytes(byte[] bytes) {
+        if (bytes.length == IPV4_LENGTH || bytes.length == IPV6_LENGTH) {
+            try {
+                return InetAddress.getByAddress(bytes).getHostAddress();
+            } catch (UnknownHostException e) {
+                throw new IllegalArgumentException("Некорректная длина адреса: " + bytes.length, e);
+            }
+        }
+        int end = bytes.length;
+        while (end > 1 && bytes[end - 1] == 0) {
+            end--;
+        }
+        return new String(Arrays.copyOfRange(bytes, 1, end), StandardCharsets.UTF_8);
+    }
+}
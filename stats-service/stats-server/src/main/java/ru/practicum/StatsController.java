@@ -1,10 +1,19 @@
 package ru.practicum;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.ingest.HitImporter;
+import ru.practicum.ingest.ImportProgress;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -12,7 +21,11 @@ import java.util.List;
 @RestController
 @RequiredArgsConstructor
 public class StatsController {
+    private static final String RELATIVE_ERROR_HEADER = "X-Stats-Relative-Error";
+
     private final StatsService service;
+    private final HitImporter importer;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/hit")
     @ResponseStatus(HttpStatus.CREATED)
@@ -21,13 +34,100 @@ public class StatsController {
         service.createNewEndpointHit(dto);
     }
 
+    @PostMapping("/hit/batch")
+    @ResponseStatus(HttpStatus.CREATED)
+    public void createNewEndpointHits(@RequestBody List<EndpointHitDto> dtos) {
+        log.info("Получен запрос на создание {} записей", dtos.size());
+        service.createNewEndpointHits(dtos);
+    }
+
+    @PostMapping("/import")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ImportProgress importHits(@RequestParam String file,
+                                     @RequestParam(required = false) String format) {
+        log.info("Получен запрос на импорт записей из файла {}, формат - {}", file, format);
+        return importer.start(file, format);
+    }
+
+    @GetMapping("/import/{id}")
+    public ImportProgress getImportProgress(@PathVariable Long id) {
+        return importer.getProgress(id);
+    }
+
     @GetMapping("/stats")
-    public List<ViewStatsDto> getAllStats(@RequestParam LocalDateTime start,
-                                          @RequestParam LocalDateTime end,
-                                          @RequestParam(defaultValue = "false") Boolean unique,
-                                          @RequestParam(required = false) List<String> uris) {
-        log.info("Получен запрос на получение статистики c {} по {}, для уникальных ip - {}, для uri = {}",
-                start, end, unique, uris);
-        return service.getStats(start, end, unique, uris);
+    public ResponseEntity<List<ViewStatsDto>> getAllStats(@RequestParam LocalDateTime start,
+                                                          @RequestParam LocalDateTime end,
+                                                          @RequestParam(defaultValue = "false") Boolean unique,
+                                                          @RequestParam(defaultValue = "false") Boolean approx,
+                                                          @RequestParam(required = false) List<String> uris) {
+        log.info("Получен запрос на получение статистики c {} по {}, для уникальных ip - {}, приближенно - {}, для uri = {}",
+                start, end, unique, approx, uris);
+        return statsResponse(start, end, unique, approx, uris);
+    }
+
+    @PostMapping("/stats/query")
+    public ResponseEntity<List<ViewStatsDto>> queryStats(@RequestBody StatsQueryDto query) {
+        if (query.getStart() == null || query.getEnd() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Не заданы границы периода start и end");
+        }
+        log.info("Получен запрос на получение статистики c {} по {}, для уникальных ip - {}, приближенно - {}, uri: {}",
+                query.getStart(), query.getEnd(), query.getUnique(), query.getApprox(),
+                query.getUris() == null ? 0 : query.getUris().size());
+        return statsResponse(query.getStart(), query.getEnd(), Boolean.TRUE.equals(query.getUnique()),
+                Boolean.TRUE.equals(query.getApprox()), query.getUris());
+    }
+
+    @GetMapping("/stats/timeseries")
+    public List<ViewStatsPointDto> getTimeSeries(@RequestParam LocalDateTime start,
+                                                 @RequestParam LocalDateTime end,
+                                                 @RequestParam(defaultValue = "hour") String bucket,
+                                                 @RequestParam(defaultValue = "false") Boolean unique,
+                                                 @RequestParam(required = false) List<String> uris) {
+        log.info("Получен запрос на получение динамики просмотров c {} по {}, интервал - {}, для уникальных ip - {}, для uri = {}",
+                start, end, bucket, unique, uris);
+        return service.getTimeSeries(start, end, bucket, unique, uris);
+    }
+
+    @GetMapping("/stats/top")
+    public TopStatsDto getTopStats(@RequestParam LocalDateTime start,
+                                   @RequestParam LocalDateTime end,
+                                   @RequestParam(defaultValue = "10") Integer k) {
+        log.info("Получен запрос на получение {} самых популярных uri c {} по {}", k, start, end);
+        return service.getTopStats(start, end, k);
+    }
+
+    @GetMapping(value = "/stats", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllStats(@RequestParam LocalDateTime start,
+                                                                @RequestParam LocalDateTime end,
+                                                                @RequestParam(defaultValue = "false") Boolean unique,
+                                                                @RequestParam(defaultValue = "false") Boolean approx,
+                                                                @RequestParam(required = false) List<String> uris) {
+        log.info("Получен запрос на потоковую выгрузку статистики c {} по {}, для уникальных ip - {}, приближенно - {}, для uri = {}",
+                start, end, unique, approx, uris);
+        service.checkRange(start, end);
+        StreamingResponseBody body = out -> service.streamStats(start, end, unique, approx, uris, stats -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(stats));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON);
+        if (service.isApproximate(start, unique, approx)) {
+            response.header(RELATIVE_ERROR_HEADER, String.valueOf(service.getApproxRelativeError()));
+        }
+        return response.body(body);
+    }
+
+    private ResponseEntity<List<ViewStatsDto>> statsResponse(LocalDateTime start, LocalDateTime end, boolean unique,
+                                                             boolean approx, List<String> uris) {
+        List<ViewStatsDto> stats = service.getStats(start, end, unique, approx, uris);
+        if (service.isApproximate(start, unique, approx)) {
+            return ResponseEntity.ok()
+                    .header(RELATIVE_ERROR_HEADER, String.valueOf(service.getApproxRelativeError()))
+                    .body(stats);
+        }
+        return ResponseEntity.ok(stats);
     }
 }
@@ -0,0 +1,4 @@
+package ru.practicum;
+
+public record StatsKey(String app, String uri) {
+}
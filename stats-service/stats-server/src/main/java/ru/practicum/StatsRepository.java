@@ -1,40 +1,42 @@
 package ru.practicum;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 import ru.practicum.model.EndpointHit;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface StatsRepository extends JpaRepository<EndpointHit, Long> {
-    @Query("SELECT new ru.practicum.ViewStatsDto(e.app, e.uri, COUNT(DISTINCT e.ip)) " +
-            "FROM EndpointHit e " +
+public interface StatsRepository extends JpaRepository<EndpointHit, Long>, HitBatchRepository {
+    String STREAM_FETCH_SIZE = "1000";
+    String STATS_UNIQUE_IP = "SELECT new ru.practicum.ViewStatsDto(e.app, u.uri, COUNT(DISTINCT e.ip)) " +
+            "FROM EndpointHit e JOIN UriEntry u ON u.id = e.uriId " +
             "WHERE e.timestamp between ?1 and ?2 " +
-            "GROUP BY e.app, e.uri " +
-            "ORDER BY COUNT(DISTINCT e.ip) DESC")
+            "GROUP BY e.app, u.id, u.uri " +
+            "ORDER BY COUNT(DISTINCT e.ip) DESC";
+    String STATS_UNIQUE_IP_FOR_URIS = "SELECT new ru.practicum.ViewStatsDto(e.app, u.uri, COUNT(DISTINCT e.ip)) " +
+            "FROM EndpointHit e JOIN UriEntry u ON u.id = e.uriId " +
+            "WHERE e.timestamp between ?1 and ?2 AND u.uri IN ?3 " +
+            "GROUP BY e.app, u.id, u.uri " +
+            "ORDER BY COUNT(DISTINCT e.ip) DESC";
+
+    @Query(STATS_UNIQUE_IP)
     List<ViewStatsDto> getStatsUniqueIp(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT new ru.practicum.ViewStatsDto(e.app, e.uri, COUNT(e.id)) " +
-            "FROM EndpointHit e " +
-            "WHERE e.timestamp between ?1 and ?2 " +
-            "GROUP BY e.app, e.uri " +
-            "ORDER BY COUNT(e.id) DESC")
-    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end);
+    @Query(STATS_UNIQUE_IP)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<ViewStatsDto> streamStatsUniqueIp(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT new ru.practicum.ViewStatsDto(e.app, e.uri, COUNT(DISTINCT e.ip)) " +
-            "FROM EndpointHit e " +
-            "WHERE e.timestamp between ?1 and ?2 AND e.uri IN ?3 " +
-            "GROUP BY e.app, e.uri " +
-            "ORDER BY COUNT(DISTINCT e.ip) DESC")
+    @Query(STATS_UNIQUE_IP_FOR_URIS)
     List<ViewStatsDto> getStatsUniqueIpForUris(LocalDateTime start, LocalDateTime end, List<String> uris);
 
-    @Query("SELECT new ru.practicum.ViewStatsDto(e.app, e.uri, COUNT(e.id)) " +
-            "FROM EndpointHit e " +
-            "WHERE e.timestamp between ?1 and ?2 AND e.uri IN ?3 " +
-            "GROUP BY e.app, e.uri " +
-            "ORDER BY COUNT(e.id) DESC")
-    List<ViewStatsDto> getStatsForUris(LocalDateTime start, LocalDateTime end, List<String> uris);
+    @Query(STATS_UNIQUE_IP_FOR_URIS)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<ViewStatsDto> streamStatsUniqueIpForUris(LocalDateTime start, LocalDateTime end, List<String> uris);
 }
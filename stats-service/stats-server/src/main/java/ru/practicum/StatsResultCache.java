@@ -0,0 +1,185 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+@Component
+public class StatsResultCache {
+    private static final String ALL_URIS = "";
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Set<Key>> byUri = new ConcurrentHashMap<>();
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration openTtl;
+    private final long openStepMillis;
+    private final Duration settle;
+    private final Counter hits;
+    private final Counter misses;
+
+    public StatsResultCache(MeterRegistry registry,
+                            @Value("${stats.cache.enabled:true}") boolean enabled,
+                            @Value("${stats.cache.max-entries:10000}") int maxEntries,
+                            @Value("${stats.cache.open-ttl:2s}") Duration openTtl,
+                            @Value("${stats.cache.settle:1m}") Duration settle) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.openTtl = openTtl;
+        this.openStepMillis = Math.max(1, openTtl.toMillis());
+        this.settle = settle;
+        this.hits = registry.counter("stats.cache.requests", "result", "hit");
+        this.misses = registry.counter("stats.cache.requests", "result", "miss");
+        registry.gauge("stats.cache.size", entries, Map::size);
+    }
+
+    public List<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, boolean unique, boolean approx,
+                                  List<String> uris, Supplier<List<ViewStatsDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        boolean open = !end.isBefore(LocalDateTime.now().minus(settle));
+        LocalDateTime keyEnd = open ? roundOpenEnd(end) : end;
+        Key key = new Key(start, keyEnd, unique, approx,
+                uris == null ? List.of() : uris.stream().distinct().sorted().toList());
+        long now = System.nanoTime();
+        Entry created = new Entry(start, open ? keyEnd.plus(openTtl) : end, new CompletableFuture<>(),
+                now + (open ? openTtl.toNanos() : Long.MAX_VALUE / 2));
+        Entry entry = entries.compute(key, (k, existing) ->
+                existing == null || existing.expiresAt - now < 0 ? created : existing);
+        if (entry != created) {
+            hits.increment();
+            return join(entry.result);
+        }
+        misses.increment();
+        index(key);
+        evictOverflow();
+        try {
+            created.result.complete(List.copyOf(loader.get()));
+        } catch (RuntimeException e) {
+            if (entries.remove(key, created) && !entries.containsKey(key)) {
+                unindex(key);
+            }
+            created.result.completeExceptionally(e);
+            throw e;
+        }
+        return created.result.join();
+    }
+
+    public void invalidate(List<EndpointHit> written) {
+        if (!enabled || written.isEmpty() || entries.isEmpty()) {
+            return;
+        }
+        LocalDateTime earliest = null;
+        LocalDateTime latest = null;
+        Set<String> uris = new HashSet<>();
+        for (EndpointHit hit : written) {
+            earliest = earliest == null || hit.getTimestamp().isBefore(earliest) ? hit.getTimestamp() : earliest;
+            latest = latest == null || hit.getTimestamp().isAfter(latest) ? hit.getTimestamp() : latest;
+            uris.add(hit.getUri());
+        }
+        uris.add(ALL_URIS);
+        for (String uri : uris) {
+            Set<Key> keys = byUri.get(uri);
+            if (keys == null) {
+                continue;
+            }
+            for (Key key : keys) {
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    unindex(key);
+                } else if (!entry.end.isBefore(earliest) && !entry.start.isAfter(latest)
+                        && entries.remove(key, entry)) {
+                    unindex(key);
+                }
+            }
+        }
+    }
+
+    private LocalDateTime roundOpenEnd(LocalDateTime end) {
+        long millis = end.toInstant(ZoneOffset.UTC).toEpochMilli();
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(Math.floorDiv(millis, openStepMillis) * openStepMillis),
+                ZoneOffset.UTC);
+    }
+
+    private void evictOverflow() {
+        if (entries.size() <= maxEntries) {
+            return;
+        }
+        long now = System.nanoTime();
+        int target = maxEntries - maxEntries / 10;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getValue().expiresAt - now < 0) {
+                it.remove();
+                unindex(e.getKey());
+            }
+        }
+        it = entries.entrySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getValue().result.isDone()) {
+                it.remove();
+                unindex(e.getKey());
+            }
+        }
+    }
+
+    private void index(Key key) {
+        for (String uri : indexUris(key)) {
+            byUri.compute(uri, (u, keys) -> {
+                Set<Key> indexed = keys == null ? ConcurrentHashMap.newKeySet() : keys;
+                indexed.add(key);
+                return indexed;
+            });
+        }
+    }
+
+    private void unindex(Key key) {
+        for (String uri : indexUris(key)) {
+            byUri.computeIfPresent(uri, (u, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static List<String> indexUris(Key key) {
+        return key.uris.isEmpty() ? List.of(ALL_URIS) : key.uris;
+    }
+
+    private static List<ViewStatsDto> join(CompletableFuture<List<ViewStatsDto>> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Key(LocalDateTime start, LocalDateTime end, boolean unique, boolean approx, List<String> uris) {
+    }
+
+    private record Entry(LocalDateTime start, LocalDateTime end, CompletableFuture<List<ViewStatsDto>> result,
+                         long expiresAt) {
+    }
+}
@@ -2,38 +2,325 @@ package ru.practicum;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
+import ru.practicum.HotWindowAggregator.WindowStats;
+import ru.practicum.ingest.HitDeduplicator;
+import ru.practicum.ingest.HitIngestQueue;
+import ru.practicum.ingest.IngestAdmission;
 import ru.practicum.mapper.EndpointHitMapper;
 import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SpaceSaving;
+import ru.practicum.storage.HitStorage;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class StatsService {
-    private final StatsRepository repository;
+    public static final int MAX_HIT_WEIGHT = 1_000_000;
+    private static final long PERSISTED_END_OFFSET_NANOS = 1000;
+    private static final Comparator<ViewStatsPointDto> POINT_ORDER = Comparator.comparing(ViewStatsPointDto::getApp)
+            .thenComparing(ViewStatsPointDto::getUri)
+            .thenComparing(ViewStatsPointDto::getBucket);
+
+    private final HitStorage storage;
+    private final HitIngestQueue ingestQueue;
+    private final IngestAdmission admission;
+    private final HitDeduplicator deduplicator;
+    private final HotWindowAggregator hotWindow;
+    private final StatsResultCache resultCache;
+    @Value("${stats.sketch.precision:12}")
+    private int sketchPrecision;
+    @Value("${stats.top.capacity:1000}")
+    private int topCapacity;
+    @Value("${stats.timeseries.max-points:10000}")
+    private long maxTimeSeriesPoints;
 
     public void createNewEndpointHit(EndpointHitDto dto) {
+        checkWeight(dto);
+        if (!deduplicator.claim(dto)) {
+            log.info("Повторная запись {} пропущена", dto.getHitId());
+            return;
+        }
         EndpointHit endpointHit = EndpointHitMapper.toModel(dto);
-        EndpointHit saved = repository.saveAndFlush(endpointHit);
-        log.info("Запись сохранена как {}", saved);
+        ingest(List.of(endpointHit));
+        log.info("Запись принята {}", endpointHit);
+    }
+
+    public void createNewEndpointHits(List<EndpointHitDto> dtos) {
+        dtos.forEach(this::checkWeight);
+        List<EndpointHit> hits = dtos.stream()
+                .filter(deduplicator::claim)
+                .map(EndpointHitMapper::toModel)
+                .toList();
+        ingest(hits);
+        log.info("Принято записей: {}", hits.size());
+    }
+
+    private void ingest(List<EndpointHit> hits) {
+        if (hits.isEmpty()) {
+            return;
+        }
+        try {
+            deduplicator.confirm(hitIds(ingestQueue.submit(admission.sample(hits))));
+        } finally {
+            deduplicator.release(hitIds(hits));
+        }
+    }
+
+    private static List<String> hitIds(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getHitId).filter(Objects::nonNull).toList();
+    }
+
+    public double getApproxRelativeError() {
+        return HyperLogLog.relativeError(sketchPrecision);
+    }
+
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, boolean unique, boolean approx,
+                                       List<String> uris) {
+        checkRange(start, end);
+        boolean estimate = isApproximate(start, unique, approx);
+        return resultCache.get(start, end, unique, estimate, uris, () -> computeStats(start, end, unique, estimate, uris));
+    }
+
+    public boolean isApproximate(LocalDateTime start, boolean unique, boolean approx) {
+        LocalDateTime horizon = storage.rawHorizon();
+        return unique && (approx || horizon != null && start.isBefore(horizon));
+    }
+
+    private List<ViewStatsDto> computeStats(LocalDateTime start, LocalDateTime end, boolean unique, boolean approx,
+                                            List<String> uris) {
+        if (!hotWindow.isEnabled()) {
+            return getPersistedStats(start, end, unique, approx, uris);
+        }
+        LocalDateTime boundary = hotWindow.coveredFrom();
+        if (end.isBefore(boundary)) {
+            return getPersistedStats(start, end, unique, approx, uris);
+        }
+        Map<StatsKey, WindowStats> recent = hotWindow.collect(start.isAfter(boundary) ? start : boundary, end, uris);
+        boolean persisted = start.isBefore(boundary);
+        LocalDateTime persistedEnd = boundary.minusNanos(PERSISTED_END_OFFSET_NANOS);
+        Map<StatsKey, Long> merged = new HashMap<>();
+        if (!unique) {
+            if (persisted) {
+                mergeInto(merged, storage.getStats(start, persistedEnd, uris));
+            }
+            recent.forEach((key, stats) -> merged.merge(key, stats.getHits(), Long::sum));
+        } else if (approx) {
+            Map<StatsKey, HyperLogLog> sketches = persisted
+                    ? storage.getIpSketches(start, persistedEnd, uris) : new HashMap<>();
+            recent.forEach((key, stats) -> {
+                HyperLogLog sketch = sketches.computeIfAbsent(key, k -> new HyperLogLog(sketchPrecision));
+                stats.getIps().forEach(sketch::add);
+            });
+            sketches.forEach((key, sketch) -> merged.put(key, sketch.estimate()));
+        } else {
+            if (persisted) {
+                mergeInto(merged, storage.getStatsUniqueIp(start, persistedEnd, uris));
+            }
+            recent.forEach((key, stats) -> merged.merge(key, (long) stats.getIps().size(), Long::sum));
+            if (persisted && !recent.isEmpty()) {
+                subtractPersistedIps(start, boundary, recent, merged);
+            }
+        }
+        return toSortedStats(merged);
+    }
+
+    @Transactional(readOnly = true)
+    public void streamStats(LocalDateTime start, LocalDateTime end, boolean unique, boolean approx, List<String> uris,
+                            Consumer<ViewStatsDto> consumer) {
+        checkRange(start, end);
+        if (isApproximate(start, unique, approx)) {
+            getStats(start, end, true, true, uris).forEach(consumer);
+            return;
+        }
+        LocalDateTime boundary = hotWindow.isEnabled() ? hotWindow.coveredFrom() : null;
+        if (boundary == null || end.isBefore(boundary)) {
+            streamPersistedStats(start, end, unique, uris, consumer);
+            return;
+        }
+        Map<StatsKey, WindowStats> recent = hotWindow.collect(start.isAfter(boundary) ? start : boundary, end, uris);
+        Map<StatsKey, Long> pending = new HashMap<>();
+        recent.forEach((key, stats) -> pending.put(key, unique ? (long) stats.getIps().size() : stats.getHits()));
+        if (!start.isBefore(boundary)) {
+            toSortedStats(pending).forEach(consumer);
+            return;
+        }
+        LocalDateTime persistedEnd = boundary.minusNanos(PERSISTED_END_OFFSET_NANOS);
+        if (!pending.isEmpty()) {
+            if (unique) {
+                subtractPersistedIps(start, boundary, recent, pending);
+            }
+            List<String> hotUris = pending.keySet().stream().map(StatsKey::uri).distinct().toList();
+            getPersistedStats(start, persistedEnd, unique, false, hotUris).forEach(stats -> pending.computeIfPresent(
+                    new StatsKey(stats.getApp(), stats.getUri()), (key, hits) -> hits + stats.getHits()));
+        }
+        // Итоги ключей из горячего окна известны заранее, поэтому их можно вставить в упорядоченный по убыванию
+        // поток из хранилища на свои места, не буферизуя остальные строки.
+        Deque<ViewStatsDto> hot = new ArrayDeque<>(toSortedStats(pending));
+        streamPersistedStats(start, persistedEnd, unique, uris, stats -> {
+            if (pending.containsKey(new StatsKey(stats.getApp(), stats.getUri()))) {
+                return;
+            }
+            while (!hot.isEmpty() && hot.peekFirst().getHits() >= stats.getHits()) {
+                consumer.accept(hot.pollFirst());
+            }
+            consumer.accept(stats);
+        });
+        hot.forEach(consumer);
+    }
+
+    public List<ViewStatsPointDto> getTimeSeries(LocalDateTime start, LocalDateTime end, String bucket, boolean unique,
+                                                 List<String> uris) {
+        checkRange(start, end);
+        TimeBucket timeBucket = TimeBucket.from(bucket);
+        if (timeBucket.count(start, end) > maxTimeSeriesPoints) {
+            String errorMessage = "Слишком много интервалов в запрошенном диапазоне, максимум " + maxTimeSeriesPoints;
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errorMessage);
+        }
+        LocalDateTime boundary = hotWindow.isEnabled() ? hotWindow.coveredFrom() : null;
+        if (boundary == null || end.isBefore(boundary)) {
+            return storage.getTimeSeries(start, end, timeBucket, unique, uris);
+        }
+        Map<PointKey, Long> points = new HashMap<>();
+        if (start.isBefore(boundary)) {
+            storage.getTimeSeries(start, boundary.minusNanos(PERSISTED_END_OFFSET_NANOS), timeBucket, unique, uris)
+                    .forEach(p -> points.put(new PointKey(new StatsKey(p.getApp(), p.getUri()), p.getBucket()),
+                            p.getHits()));
+        }
+        LocalDateTime from = start.isAfter(boundary) ? start : boundary;
+        for (LocalDateTime point = timeBucket.truncate(from); !point.isAfter(end); point = timeBucket.next(point)) {
+            LocalDateTime next = timeBucket.next(point);
+            Map<StatsKey, WindowStats> recent = hotWindow.collect(point.isAfter(from) ? point : from,
+                    next.isAfter(end) ? end : next.minusNanos(1), uris);
+            Map<StatsKey, Long> counts = new HashMap<>();
+            recent.forEach((key, stats) -> counts.put(key, unique ? (long) stats.getIps().size() : stats.getHits()));
+            LocalDateTime persistedFrom = point.isAfter(start) ? point : start;
+            if (unique && !recent.isEmpty() && persistedFrom.isBefore(boundary)) {
+                subtractPersistedIps(persistedFrom, boundary, recent, counts);
+            }
+            LocalDateTime bucketStart = point;
+            counts.forEach((key, hits) -> points.merge(new PointKey(key, bucketStart), hits, Long::sum));
+        }
+        List<ViewStatsPointDto> series = new ArrayList<>(points.size());
+        points.forEach((key, hits) -> series.add(new ViewStatsPointDto(key.key().app(), key.key().uri(), key.bucket(),
+                hits)));
+        series.sort(POINT_ORDER);
+        return series;
+    }
+
+    public TopStatsDto getTopStats(LocalDateTime start, LocalDateTime end, int k) {
+        checkRange(start, end);
+        if (k < 1 || k > topCapacity) {
+            String errorMessage = "Параметр k должен быть в диапазоне от 1 до " + topCapacity;
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errorMessage);
+        }
+        // Часовые скетчи покрывают только целые часы внутри периода, неполные часы по краям досчитываются точно.
+        LocalDateTime from = start.truncatedTo(ChronoUnit.HOURS);
+        if (from.isBefore(start)) {
+            from = from.plusHours(1);
+        }
+        LocalDateTime to = end.truncatedTo(ChronoUnit.HOURS);
+        SpaceSaving sketch = new SpaceSaving(topCapacity);
+        SpaceSaving edges = new SpaceSaving(topCapacity);
+        if (from.isBefore(to)) {
+            sketch.merge(storage.getTopSketch(from, to));
+            if (start.isBefore(from)) {
+                addStats(edges, storage.getStats(start, from.minusNanos(PERSISTED_END_OFFSET_NANOS), null));
+            }
+            addStats(edges, storage.getStats(to, end, null));
+        } else {
+            addStats(edges, storage.getStats(start, end, null));
+        }
+        sketch.merge(edges);
+        List<TopViewStatsDto> top = sketch.top(k).stream()
+                .map(e -> new TopViewStatsDto(e.key().app(), e.key().uri(), e.count(), e.error(), e.guaranteed()))
+                .toList();
+        return new TopStatsDto(start, end, sketch.getTotal(), sketch.maxError(), top);
+    }
+
+    private static void addStats(SpaceSaving sketch, List<ViewStatsDto> stats) {
+        stats.forEach(s -> sketch.add(new StatsKey(s.getApp(), s.getUri()), s.getHits()));
     }
 
-    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, boolean unique, List<String> uris) {
+    public void checkRange(LocalDateTime start, LocalDateTime end) {
         if (start.isAfter(end)) {
             String errorMessage = "Время начала start должно быть раньше, чем время окончания end";
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errorMessage);
         }
-        List<ViewStatsDto> statsList;
-        if (uris == null || uris.isEmpty()) {
-            statsList = unique ? repository.getStatsUniqueIp(start, end) : repository.getStats(start, end);
+    }
+
+    private void checkWeight(EndpointHitDto dto) {
+        Integer weight = dto.getWeight();
+        if (weight != null && (weight < 1 || weight > MAX_HIT_WEIGHT)) {
+            String errorMessage = "Вес записи weight должен быть в диапазоне от 1 до " + MAX_HIT_WEIGHT;
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errorMessage);
+        }
+    }
+
+    private void streamPersistedStats(LocalDateTime start, LocalDateTime end, boolean unique, List<String> uris,
+                                      Consumer<ViewStatsDto> consumer) {
+        if (unique) {
+            storage.streamStatsUniqueIp(start, end, uris, consumer);
         } else {
-            statsList = unique ? repository.getStatsUniqueIpForUris(start, end, uris) : repository.getStatsForUris(start, end, uris);
+            storage.streamStats(start, end, uris, consumer);
+        }
+    }
+
+    private List<ViewStatsDto> getPersistedStats(LocalDateTime start, LocalDateTime end, boolean unique, boolean approx,
+                                                 List<String> uris) {
+        if (!unique) {
+            return storage.getStats(start, end, uris);
         }
-        return statsList;
+        if (approx) {
+            Map<StatsKey, Long> estimates = new HashMap<>();
+            storage.getIpSketches(start, end, uris).forEach((key, sketch) -> estimates.put(key, sketch.estimate()));
+            return toSortedStats(estimates);
+        }
+        return storage.getStatsUniqueIp(start, end, uris);
+    }
+
+    private void subtractPersistedIps(LocalDateTime start, LocalDateTime boundary, Map<StatsKey, WindowStats> recent,
+                                      Map<StatsKey, Long> merged) {
+        Map<StatsKey, Set<String>> recentIps = new HashMap<>();
+        recent.forEach((key, stats) -> recentIps.put(key, stats.getIps()));
+        storage.findIps(start, boundary, recentIps).forEach((key, ips) -> {
+            WindowStats stats = recent.get(key);
+            if (stats != null) {
+                long seen = ips.stream().filter(stats.getIps()::contains).count();
+                merged.merge(key, -seen, Long::sum);
+            }
+        });
+    }
+
+    private static void mergeInto(Map<StatsKey, Long> merged, List<ViewStatsDto> stats) {
+        stats.forEach(s -> merged.merge(new StatsKey(s.getApp(), s.getUri()), s.getHits(), Long::sum));
+    }
+
+    private static List<ViewStatsDto> toSortedStats(Map<StatsKey, Long> merged) {
+        List<ViewStatsDto> stats = new ArrayList<>(merged.size());
+        merged.forEach((key, hits) -> stats.add(new ViewStatsDto(key.app(), key.uri(), hits)));
+        stats.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return stats;
+    }
+
+    private record PointKey(StatsKey key, LocalDateTime bucket) {
     }
 }
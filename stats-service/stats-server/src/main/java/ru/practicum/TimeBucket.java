@@ -0,0 +1,45 @@
+package ru.practicum;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+public enum TimeBucket {
+    MINUTE(ChronoUnit.MINUTES),
+    HOUR(ChronoUnit.HOURS),
+    DAY(ChronoUnit.DAYS);
+
+    private final ChronoUnit unit;
+
+    TimeBucket(ChronoUnit unit) {
+        this.unit = unit;
+    }
+
+    public static TimeBucket from(String value) {
+        for (TimeBucket bucket : values()) {
+            if (bucket.name().equalsIgnoreCase(value)) {
+                return bucket;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Параметр bucket должен принимать одно из значений: minute, hour, day");
+    }
+
+    public String sqlName() {
+        return name().toLowerCase();
+    }
+
+    public LocalDateTime truncate(LocalDateTime dateTime) {
+        return dateTime.truncatedTo(unit);
+    }
+
+    public LocalDateTime next(LocalDateTime dateTime) {
+        return truncate(dateTime).plus(1, unit);
+    }
+
+    public long count(LocalDateTime start, LocalDateTime end) {
+        return unit.between(truncate(start), truncate(end)) + 1;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.practicum;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class UriDictionary {
+    private static final int IN_CHUNK_SIZE = 500;
+    private static final String INSERT_POSTGRES = "INSERT INTO uris (uri) VALUES (?) ON CONFLICT (uri) DO NOTHING";
+    private static final String INSERT_STANDARD = "MERGE INTO uris t " +
+            "USING (VALUES (CAST(? AS VARCHAR(512)))) AS s(uri) ON t.uri = s.uri " +
+            "WHEN NOT MATCHED THEN INSERT (uri) VALUES (s.uri)";
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final String insertSql;
+
+    public UriDictionary(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager, DatabaseDialect dialect) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.insertSql = dialect.isPostgres() ? INSERT_POSTGRES : INSERT_STANDARD;
+    }
+
+    public void register(Collection<String> uris) {
+        Set<String> missing = new TreeSet<>();
+        for (String uri : uris) {
+            if (!ids.containsKey(uri)) {
+                missing.add(uri);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        newTransaction.executeWithoutResult(status -> {
+            List<Object[]> args = missing.stream().map(uri -> new Object[]{uri}).toList();
+            jdbcTemplate.batchUpdate(insertSql, args);
+        });
+        load(missing);
+    }
+
+    public Integer idOf(String uri) {
+        Integer id = ids.get(uri);
+        if (id == null) {
+            register(List.of(uri));
+            id = ids.get(uri);
+        }
+        return id;
+    }
+
+    public List<Integer> findIds(Collection<String> uris) {
+        Map<String, Integer> found = lookup(uris);
+        return uris.stream().map(found::get).filter(Objects::nonNull).distinct().toList();
+    }
+
+    public Map<String, Integer> lookup(Collection<String> uris) {
+        Set<String> missing = new TreeSet<>();
+        for (String uri : uris) {
+            if (!ids.containsKey(uri)) {
+                missing.add(uri);
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(missing);
+        }
+        Map<String, Integer> found = new HashMap<>();
+        for (String uri : uris) {
+            Integer id = ids.get(uri);
+            if (id != null) {
+                found.put(uri, id);
+            }
+        }
+        return found;
+    }
+
+    private void load(Collection<String> uris) {
+        List<String> list = List.copyOf(uris);
+        for (int from = 0; from < list.size(); from += IN_CHUNK_SIZE) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("uris", list.subList(from, Math.min(list.size(), from + IN_CHUNK_SIZE)));
+            namedJdbcTemplate.query("SELECT id, uri FROM uris WHERE uri IN (:uris)", params,
+                    (RowCallbackHandler) rs -> ids.put(rs.getString("uri"), rs.getInt("id")));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.sketch.BloomFilter;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+@Component
+public class HitDeduplicator {
+    private static final int GENERATIONS = 2;
+
+    private final Deque<BloomFilter> generations = new ArrayDeque<>(GENERATIONS);
+    private final Set<String> claimed = new HashSet<>();
+    private final boolean enabled;
+    private final long expectedIds;
+    private final double falsePositiveRate;
+    private final long rotationNanos;
+    private final Counter duplicates;
+    private long rotatedAt;
+
+    public HitDeduplicator(MeterRegistry registry,
+                           @Value("${stats.dedup.enabled:true}") boolean enabled,
+                           @Value("${stats.dedup.window:10m}") Duration window,
+                           @Value("${stats.dedup.expected-ids:1000000}") long expectedIds,
+                           @Value("${stats.dedup.false-positive-rate:0.0001}") double falsePositiveRate) {
+        this.enabled = enabled;
+        this.expectedIds = expectedIds;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rotationNanos = window.toNanos() / (GENERATIONS - 1);
+        this.duplicates = registry.counter("stats.dedup.duplicates");
+        if (enabled) {
+            generations.addFirst(new BloomFilter(expectedIds, falsePositiveRate));
+            rotatedAt = System.nanoTime();
+        }
+    }
+
+    public synchronized boolean claim(EndpointHitDto dto) {
+        if (!enabled || dto.getHitId() == null || dto.getHitId().isEmpty()) {
+            return true;
+        }
+        rotateIfDue();
+        if (claimed.contains(dto.getHitId()) || remembered(dto.getHitId())) {
+            duplicates.increment();
+            return false;
+        }
+        claimed.add(dto.getHitId());
+        return true;
+    }
+
+    public synchronized void confirm(Collection<String> hitIds) {
+        if (!enabled) {
+            return;
+        }
+        rotateIfDue();
+        for (String hitId : hitIds) {
+            if (hitId != null && claimed.remove(hitId)) {
+                generations.getFirst().put(hitId);
+            }
+        }
+    }
+
+    public synchronized void release(Collection<String> hitIds) {
+        hitIds.forEach(claimed::remove);
+    }
+
+    private boolean remembered(String hitId) {
+        for (BloomFilter generation : generations) {
+            if (generation.mightContain(hitId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rotateIfDue() {
+        long now = System.nanoTime();
+        long due = Math.min(GENERATIONS, (now - rotatedAt) / rotationNanos);
+        if (due == 0) {
+            return;
+        }
+        for (int i = 0; i < due; i++) {
+            generations.addFirst(new BloomFilter(expectedIds, falsePositiveRate));
+            if (generations.size() > GENERATIONS) {
+                generations.removeLast();
+            }
+        }
+        rotatedAt = now;
+    }
+}
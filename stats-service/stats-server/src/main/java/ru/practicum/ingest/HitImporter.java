@@ -0,0 +1,307 @@
+package ru.practicum.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.HitPartitionManager;
+import ru.practicum.HotWindowAggregator;
+import ru.practicum.StatsService;
+import ru.practicum.mapper.EndpointHitMapper;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Component
+public class HitImporter {
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String CSV_HEADER = "app,";
+
+    private final HitWriter writer;
+    private final HitDeduplicator deduplicator;
+    private final HotWindowAggregator hotWindow;
+    private final HitPartitionManager partitionManager;
+    private final ObjectReader reader;
+    private final Path dir;
+    private final int parallelism;
+    private final long chunkSize;
+    private final int batchSize;
+    private final Map<Long, Task> tasks = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+
+    public HitImporter(HitWriter writer,
+                       HitDeduplicator deduplicator,
+                       HotWindowAggregator hotWindow,
+                       HitPartitionManager partitionManager,
+                       ObjectMapper objectMapper,
+                       @Value("${stats.import.dir:./data/import}") Path dir,
+                       @Value("${stats.import.parallelism:4}") int parallelism,
+                       @Value("${stats.import.chunk-size:64MB}") DataSize chunkSize,
+                       @Value("${stats.ingest.batch-size:1000}") int batchSize) {
+        this.writer = writer;
+        this.deduplicator = deduplicator;
+        this.hotWindow = hotWindow;
+        this.partitionManager = partitionManager;
+        this.reader = objectMapper.readerFor(EndpointHitDto.class);
+        this.dir = dir.toAbsolutePath().normalize();
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize.toBytes();
+        this.batchSize = batchSize;
+    }
+
+    public synchronized ImportProgress start(String file, String format) {
+        Path path = dir.resolve(file).normalize();
+        if (!path.startsWith(dir) || !Files.isRegularFile(path)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Файл " + file + " не найден в каталоге импорта");
+        }
+        if (tasks.values().stream().anyMatch(task -> task.state == ImportProgress.State.RUNNING)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Импорт уже выполняется");
+        }
+        ImportFormat importFormat = format == null ? ImportFormat.detect(path) : ImportFormat.from(format);
+        Task task;
+        try {
+            task = new Task(nextId.incrementAndGet(), path, importFormat, Files.size(path));
+        } catch (IOException e) {
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Не удалось прочитать файл " + file, e);
+        }
+        tasks.put(task.id, task);
+        Thread.ofPlatform().name("hit-import-" + task.id).daemon().start(() -> run(task));
+        log.info("Запущен импорт {} из файла {}", task.id, path);
+        return task.progress();
+    }
+
+    public ImportProgress getProgress(long id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Импорт с id=" + id + " не найден");
+        }
+        return task.progress();
+    }
+
+    private void run(Task task) {
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        try (FileChannel channel = FileChannel.open(task.path, StandardOpenOption.READ)) {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (long[] range : split(channel)) {
+                chunks.add(pool.submit(() -> {
+                    importChunk(channel, range[0], range[1], task);
+                    return null;
+                }));
+            }
+            for (Future<?> chunk : chunks) {
+                chunk.get();
+            }
+            partitionManager.maintain();
+            task.finish(null);
+            log.info("Импорт {} завершен, загружено записей: {}, пропущено строк: {}, повторных записей: {}",
+                    task.id, task.imported.get(), task.rejected.get(), task.duplicates.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.finish(e);
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            task.finish(cause);
+            log.error("Импорт {} прерван, загружено записей: {}", task.id, task.imported.get(), cause);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<long[]> ranges = new ArrayList<>();
+        long from = 0;
+        while (from < size) {
+            long to = Math.min(size, from + chunkSize);
+            if (to < size) {
+                to = nextLineStart(channel, to);
+            }
+            ranges.add(new long[]{from, to});
+            from = to;
+        }
+        return ranges;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += Math.max(read, 0);
+        }
+        return size;
+    }
+
+    private void importChunk(FileChannel channel, long from, long to, Task task) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        int limit = buffer.limit();
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        int lineStart = 0;
+        int reported = 0;
+        try {
+            for (int i = 0; i <= limit; i++) {
+                if (i < limit && buffer.get(i) != '\n') {
+                    continue;
+                }
+                if (i > lineStart) {
+                    byte[] line = new byte[i - lineStart];
+                    buffer.get(lineStart, line);
+                    accept(task, new String(line, StandardCharsets.UTF_8).strip(), batch);
+                }
+                lineStart = i + 1;
+                if (batch.size() >= batchSize) {
+                    flush(batch, task);
+                    task.bytesProcessed.addAndGet(Math.min(lineStart, limit) - reported);
+                    reported = Math.min(lineStart, limit);
+                }
+            }
+            flush(batch, task);
+            task.bytesProcessed.addAndGet(limit - reported);
+        } finally {
+            deduplicator.release(hitIds(batch));
+        }
+    }
+
+    private void accept(Task task, String line, List<EndpointHit> batch) {
+        EndpointHitDto dto;
+        EndpointHit hit;
+        try {
+            dto = parse(task.format, line);
+            if (dto == null) {
+                return;
+            }
+            hit = EndpointHitMapper.toModel(dto);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            task.rejected.incrementAndGet();
+            log.debug("Строка импорта {} пропущена: {}", task.id, e.getMessage());
+            return;
+        }
+        if (!deduplicator.claim(dto)) {
+            task.duplicates.incrementAndGet();
+            return;
+        }
+        batch.add(hit);
+    }
+
+    private void flush(List<EndpointHit> batch, Task task) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> hitIds = hitIds(batch);
+        try {
+            writer.write(batch);
+            hotWindow.record(batch);
+            deduplicator.confirm(hitIds);
+        } finally {
+            deduplicator.release(hitIds);
+        }
+        task.imported.addAndGet(batch.size());
+        batch.clear();
+    }
+
+    private static List<String> hitIds(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getHitId).filter(Objects::nonNull).toList();
+    }
+
+    private EndpointHitDto parse(ImportFormat format, String line) {
+        if (line.isEmpty()) {
+            return null;
+        }
+        if (format == ImportFormat.NDJSON) {
+            EndpointHitDto dto;
+            try {
+                dto = reader.readValue(line);
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException(e.getOriginalMessage());
+            }
+            if (dto.getApp() == null || dto.getUri() == null || dto.getIp() == null || dto.getTimestamp() == null) {
+                throw new IllegalArgumentException("не заполнены обязательные поля");
+            }
+            if (dto.getWeight() != null && (dto.getWeight() < 1 || dto.getWeight() > StatsService.MAX_HIT_WEIGHT)) {
+                throw new IllegalArgumentException("недопустимый вес записи " + dto.getWeight());
+            }
+            return dto;
+        }
+        if (line.startsWith(CSV_HEADER)) {
+            return null;
+        }
+        int appEnd = line.indexOf(',');
+        int timestampStart = line.lastIndexOf(',');
+        int ipStart = line.lastIndexOf(',', timestampStart - 1);
+        if (appEnd < 0 || ipStart <= appEnd) {
+            throw new IllegalArgumentException("ожидаются колонки app,uri,ip,timestamp");
+        }
+        return EndpointHitDto.builder()
+                .app(line.substring(0, appEnd))
+                .uri(line.substring(appEnd + 1, ipStart))
+                .ip(line.substring(ipStart + 1, timestampStart))
+                .timestamp(LocalDateTime.parse(line.substring(timestampStart + 1), TIMESTAMP))
+                .build();
+    }
+
+    private static class Task {
+        private final long id;
+        private final Path path;
+        private final ImportFormat format;
+        private final long bytesTotal;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final AtomicLong bytesProcessed = new AtomicLong();
+        private final AtomicLong imported = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong duplicates = new AtomicLong();
+        private volatile ImportProgress.State state = ImportProgress.State.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+
+        private Task(long id, Path path, ImportFormat format, long bytesTotal) {
+            this.id = id;
+            this.path = path;
+            this.format = format;
+            this.bytesTotal = bytesTotal;
+        }
+
+        private void finish(Throwable failure) {
+            error = failure == null ? null : failure.toString();
+            finishedAt = LocalDateTime.now();
+            state = failure == null ? ImportProgress.State.COMPLETED : ImportProgress.State.FAILED;
+        }
+
+        private ImportProgress progress() {
+            return new ImportProgress(id, path.getFileName().toString(), format, state, bytesTotal,
+                    bytesProcessed.get(), imported.get(), rejected.get(), duplicates.get(), startedAt, finishedAt, error);
+        }
+    }
+}
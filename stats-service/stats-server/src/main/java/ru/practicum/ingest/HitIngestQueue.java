@@ -0,0 +1,191 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.practicum.HotWindowAggregator;
+import ru.practicum.StatsResultCache;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Component
+public class HitIngestQueue implements SmartLifecycle {
+    private static final int WRITER_PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final HitWriter writer;
+    private final HotWindowAggregator hotWindow;
+    private final StatsResultCache resultCache;
+    private final boolean async;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final BlockingQueue<EndpointHit> queue;
+    private final Counter dropped;
+    private final Counter flushed;
+    private final Counter failed;
+    private final Timer flushTimer;
+    private volatile boolean running;
+    private Thread worker;
+
+    public HitIngestQueue(HitWriter writer,
+                          HotWindowAggregator hotWindow,
+                          StatsResultCache resultCache,
+                          MeterRegistry registry,
+                          @Value("${stats.ingest.async.enabled:true}") boolean async,
+                          @Value("${stats.ingest.async.queue-capacity:100000}") int capacity,
+                          @Value("${stats.ingest.batch-size:1000}") int batchSize,
+                          @Value("${stats.ingest.async.flush-interval:200ms}") Duration flushInterval) {
+        this.writer = writer;
+        this.hotWindow = hotWindow;
+        this.resultCache = resultCache;
+        this.async = async;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.dropped = registry.counter("stats.ingest.dropped");
+        this.flushed = registry.counter("stats.ingest.flushed");
+        this.failed = registry.counter("stats.ingest.failed");
+        this.flushTimer = Timer.builder("stats.ingest.flush")
+                .publishPercentileHistogram()
+                .register(registry);
+        registry.gauge("stats.ingest.queue.depth", queue, BlockingQueue::size);
+    }
+
+    public List<EndpointHit> submit(List<EndpointHit> hits) {
+        if (!async) {
+            writer.write(hits);
+            hotWindow.record(hits);
+            return hits;
+        }
+        List<EndpointHit> accepted = new ArrayList<>(hits.size());
+        for (EndpointHit hit : hits) {
+            if (queue.offer(hit)) {
+                accepted.add(hit);
+            }
+        }
+        hotWindow.record(accepted);
+        resultCache.invalidate(accepted);
+        int rejected = hits.size() - accepted.size();
+        if (rejected > 0) {
+            dropped.increment(rejected);
+            log.warn("Очередь записи переполнена, отброшено записей: {}", rejected);
+        }
+        return accepted;
+    }
+
+    public int depth() {
+        return queue.size();
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public double fillRatio() {
+        if (!async) {
+            return 0;
+        }
+        int depth = queue.size();
+        return (double) depth / (depth + queue.remainingCapacity());
+    }
+
+    @Override
+    public void start() {
+        if (!async) {
+            return;
+        }
+        running = true;
+        worker = new Thread(this::drainLoop, "hit-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (worker == null) {
+            return;
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return WRITER_PHASE;
+    }
+
+    private void drainLoop() {
+        List<EndpointHit> batch = new ArrayList<>(batchSize);
+        boolean interrupted = false;
+        while (running) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+        queue.drainTo(batch);
+        for (int from = 0; from < batch.size(); from += batchSize) {
+            flush(batch.subList(from, Math.min(batch.size(), from + batchSize)));
+        }
+        log.info("Очередь записи остановлена, сохранено при остановке: {}", batch.size());
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collectBatch(List<EndpointHit> batch) throws InterruptedException {
+        EndpointHit first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + flushInterval.toNanos();
+        while (batch.size() < batchSize) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            EndpointHit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        try {
+            flushTimer.record(() -> writer.write(batch));
+            flushed.increment(batch.size());
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Не удалось сохранить {} записей", batch.size(), e);
+        }
+    }
+}
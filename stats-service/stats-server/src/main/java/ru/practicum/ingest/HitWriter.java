@@ -0,0 +1,24 @@
+package ru.practicum.ingest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsResultCache;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.storage.HitStorage;
+
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class HitWriter {
+    private final HitStorage storage;
+    private final StatsResultCache resultCache;
+
+    public void write(List<EndpointHit> hits) {
+        storage.append(hits);
+        resultCache.invalidate(hits);
+        log.debug("Сохранено записей: {}", hits.size());
+    }
+}
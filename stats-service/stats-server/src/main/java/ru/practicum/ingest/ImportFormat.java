@@ -0,0 +1,25 @@
+package ru.practicum.ingest;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.file.Path;
+
+public enum ImportFormat {
+    NDJSON,
+    CSV;
+
+    public static ImportFormat from(String value) {
+        for (ImportFormat format : values()) {
+            if (format.name().equalsIgnoreCase(value)) {
+                return format;
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "Параметр format должен принимать одно из значений: ndjson, csv");
+    }
+
+    public static ImportFormat detect(Path path) {
+        return path.getFileName().toString().toLowerCase().endsWith(".csv") ? CSV : NDJSON;
+    }
+}
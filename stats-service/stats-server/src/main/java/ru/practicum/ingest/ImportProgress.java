@@ -0,0 +1,24 @@
+package ru.practicum.ingest;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDateTime;
+
+public record ImportProgress(long id,
+                             String file,
+                             ImportFormat format,
+                             State state,
+                             long bytesTotal,
+                             long bytesProcessed,
+                             long imported,
+                             long rejected,
+                             long duplicates,
+                             @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startedAt,
+                             @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime finishedAt,
+                             String error) {
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
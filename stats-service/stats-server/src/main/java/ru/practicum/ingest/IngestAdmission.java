@@ -0,0 +1,124 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.storage.HitStorage;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Component
+public class IngestAdmission implements HandlerInterceptor {
+    private final HitIngestQueue ingestQueue;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final boolean enabled;
+    private final int maxInFlight;
+    private final double sampleThreshold;
+    private final double rejectThreshold;
+    private final double sampleRate;
+    private final String retryAfter;
+    private final Counter rejected;
+    private final Counter sampledOut;
+
+    public IngestAdmission(HitIngestQueue ingestQueue,
+                           MeterRegistry registry,
+                           @Value("${stats.admission.enabled:true}") boolean enabled,
+                           @Value("${stats.admission.max-in-flight:200}") int maxInFlight,
+                           @Value("${stats.admission.sync-max-in-flight:5}") int syncMaxInFlight,
+                           @Value("${stats.admission.sample-threshold:0.5}") double sampleThreshold,
+                           @Value("${stats.admission.reject-threshold:0.9}") double rejectThreshold,
+                           @Value("${stats.admission.sample-rate:1.0}") double sampleRate,
+                           @Value("${stats.admission.retry-after:1s}") Duration retryAfter) {
+        this.ingestQueue = ingestQueue;
+        this.enabled = enabled;
+        this.maxInFlight = ingestQueue.isAsync() ? maxInFlight : syncMaxInFlight;
+        this.sampleThreshold = sampleThreshold;
+        this.rejectThreshold = rejectThreshold;
+        this.sampleRate = sampleRate;
+        this.retryAfter = String.valueOf(Math.max(1, retryAfter.toSeconds()));
+        this.rejected = registry.counter("stats.admission.rejected");
+        this.sampledOut = registry.counter("stats.admission.sampled-out");
+        registry.gauge("stats.admission.in-flight", inFlight);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled) {
+            return true;
+        }
+        if (inFlight.incrementAndGet() > maxInFlight || ingestQueue.fillRatio() >= rejectThreshold) {
+            inFlight.decrementAndGet();
+            rejected.increment();
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+            log.debug("Запрос на запись отклонен: запросов в обработке {}, заполненность очереди {}",
+                    inFlight.get(), ingestQueue.fillRatio());
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (enabled) {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    public List<EndpointHit> sample(List<EndpointHit> hits) {
+        if (!enabled || sampleRate >= 1.0 || ingestQueue.fillRatio() < sampleThreshold) {
+            return hits;
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<EndpointHit> kept = new ArrayList<>();
+        int dropped = 0;
+        for (EndpointHit hit : hits) {
+            if (random.nextDouble() < sampleRate) {
+                addScaled(kept, hit, scaledWeight(hit.getWeight(), random));
+            } else {
+                dropped++;
+            }
+        }
+        sampledOut.increment(dropped);
+        return kept;
+    }
+
+    private long scaledWeight(int weight, ThreadLocalRandom random) {
+        double scaled = weight / sampleRate;
+        long whole = (long) scaled;
+        if (random.nextDouble() < scaled - whole) {
+            whole++;
+        }
+        return whole;
+    }
+
+    // Вес, который не помещается в одну запись хранилища, делится между копиями записи, чтобы сумма не смещалась.
+    private static void addScaled(List<EndpointHit> kept, EndpointHit hit, long weight) {
+        for (; weight > HitStorage.MAX_WEIGHT; weight -= HitStorage.MAX_WEIGHT) {
+            kept.add(EndpointHit.builder()
+                    .app(hit.getApp())
+                    .uriId(hit.getUriId())
+                    .uri(hit.getUri())
+                    .hitId(hit.getHitId())
+                    .ip(hit.getIp())
+                    .timestamp(hit.getTimestamp())
+                    .weight(HitStorage.MAX_WEIGHT)
+                    .build());
+        }
+        hit.setWeight((int) weight);
+        kept.add(hit);
+    }
+}
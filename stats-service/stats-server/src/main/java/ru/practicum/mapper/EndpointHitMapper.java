@@ -1,15 +1,18 @@
 package ru.practicum.mapper;
 
 import ru.practicum.EndpointHitDto;
+import ru.practicum.IpAddresses;
 import ru.practicum.model.EndpointHit;
 
 public class EndpointHitMapper {
     public static EndpointHit toModel(EndpointHitDto dto) {
         return EndpointHit.builder()
+                .hitId(dto.getHitId())
                 .app(dto.getApp())
-                .ip(dto.getIp())
+                .ip(IpAddresses.canonical(dto.getIp()))
                 .uri(dto.getUri())
                 .timestamp(dto.getTimestamp())
+                .weight(dto.getWeight() == null ? 1 : dto.getWeight())
                 .build();
     }
 }
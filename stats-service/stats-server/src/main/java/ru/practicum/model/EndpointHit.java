@@ -12,6 +12,7 @@ import java.time.LocalDateTime;
 @ToString
 @Builder
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
+@NoArgsConstructor
 @AllArgsConstructor
 public class EndpointHit {
     @Id
@@ -22,13 +23,24 @@ public class EndpointHit {
     @Column(nullable = false)
     private String app;
 
-    @Column(nullable = false)
+    @Column(name = "uri_id", nullable = false)
+    private Integer uriId;
+
+    @Transient
     private String uri;
 
+    @Transient
+    private String hitId;
+
     @Column(nullable = false)
+    @Convert(converter = IpAddressConverter.class)
     private String ip;
 
     @Column(nullable = false)
     private LocalDateTime timestamp;
 
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer weight = 1;
+
 }
@@ -0,0 +1,18 @@
+package ru.practicum.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import ru.practicum.IpAddresses;
+
+@Converter
+public class IpAddressConverter implements AttributeConverter<String, byte[]> {
+    @Override
+    public byte[] convertToDatabaseColumn(String attribute) {
+        return attribute == null ? null : IpAddresses.toBytes(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] dbData) {
+        return dbData == null ? null : IpAddresses.fromBytes(dbData);
+    }
+}
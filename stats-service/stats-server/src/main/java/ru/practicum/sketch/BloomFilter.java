@@ -0,0 +1,53 @@
+package ru.practicum.sketch;
+
+public class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Некорректные параметры фильтра Блума");
+        }
+        long m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) ((m + Long.SIZE - 1) / Long.SIZE)];
+        this.bitCount = (long) bits.length * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    public boolean mightContain(String value) {
+        long hash = HyperLogLog.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            if (!get(index(h1, h2, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean put(String value) {
+        long hash = HyperLogLog.hash64(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashCount; i++) {
+            long index = index(h1, h2, i);
+            if (!get(index)) {
+                bits[(int) (index >>> 6)] |= 1L << index;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private long index(int h1, int h2, int i) {
+        long combined = h1 + (long) i * h2;
+        return Math.floorMod(combined, bitCount);
+    }
+
+    private boolean get(long index) {
+        return (bits[(int) (index >>> 6)] & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,163 @@
+package ru.practicum.sketch;
+
+import ru.practicum.StatsKey;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class SpaceSaving {
+    private static final Comparator<Counter> BY_COUNT = Comparator.comparingLong((Counter c) -> c.count)
+            .thenComparingLong(c -> c.seq);
+
+    private final int capacity;
+    private final Map<StatsKey, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> ordered = new TreeSet<>(BY_COUNT);
+    private long total;
+    private long nextSeq;
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Размер Space-Saving должен быть положительным");
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long maxError() {
+        return counters.size() < capacity ? 0 : ordered.first().count;
+    }
+
+    public void add(StatsKey key, long weight) {
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            increment(counter, weight);
+            return;
+        }
+        if (counters.size() < capacity) {
+            put(key, weight, 0);
+            return;
+        }
+        Counter min = ordered.pollFirst();
+        counters.remove(min.key);
+        put(key, min.count + weight, min.count);
+    }
+
+    public void merge(SpaceSaving other) {
+        long ownMin = maxError();
+        long otherMin = other.maxError();
+        Map<StatsKey, long[]> combined = new HashMap<>();
+        counters.forEach((key, c) -> combined.put(key, new long[]{c.count + otherMin, c.error + otherMin}));
+        other.counters.forEach((key, c) -> {
+            long[] value = combined.get(key);
+            if (value == null) {
+                combined.put(key, new long[]{c.count + ownMin, c.error + ownMin});
+            } else {
+                value[0] += c.count - otherMin;
+                value[1] += c.error - otherMin;
+            }
+        });
+        counters.clear();
+        ordered.clear();
+        combined.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<StatsKey, long[]> e) -> e.getValue()[0]).reversed())
+                .limit(capacity)
+                .forEach(e -> put(e.getKey(), e.getValue()[0], e.getValue()[1]));
+        total += other.total;
+    }
+
+    public List<Estimate> top(int k) {
+        List<Counter> sorted = new ArrayList<>(ordered.descendingSet());
+        long next = sorted.size() > k ? sorted.get(k).count : maxError();
+        List<Estimate> top = new ArrayList<>(Math.min(k, sorted.size()));
+        for (Counter c : sorted.subList(0, Math.min(k, sorted.size()))) {
+            top.add(new Estimate(c.key, c.count, c.error, c.count - c.error >= next));
+        }
+        return top;
+    }
+
+    public byte[] toBytes() {
+        List<byte[][]> encoded = new ArrayList<>(counters.size());
+        int size = Integer.BYTES + Long.BYTES + Integer.BYTES;
+        for (Counter c : counters.values()) {
+            byte[] app = c.key.app().getBytes(StandardCharsets.UTF_8);
+            byte[] uri = c.key.uri().getBytes(StandardCharsets.UTF_8);
+            encoded.add(new byte[][]{app, uri});
+            size += 2 * Integer.BYTES + app.length + uri.length + 2 * Long.BYTES;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size)
+                .putInt(capacity)
+                .putLong(total)
+                .putInt(counters.size());
+        int i = 0;
+        for (Counter c : counters.values()) {
+            byte[][] strings = encoded.get(i++);
+            buffer.putInt(strings[0].length).put(strings[0])
+                    .putInt(strings[1].length).put(strings[1])
+                    .putLong(c.count)
+                    .putLong(c.error);
+        }
+        return buffer.array();
+    }
+
+    public static SpaceSaving fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        SpaceSaving sketch = new SpaceSaving(buffer.getInt());
+        sketch.total = buffer.getLong();
+        int size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            String app = readString(buffer);
+            String uri = readString(buffer);
+            sketch.put(new StatsKey(app, uri), buffer.getLong(), buffer.getLong());
+        }
+        return sketch;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private void put(StatsKey key, long count, long error) {
+        Counter counter = new Counter(key, nextSeq++);
+        counter.count = count;
+        counter.error = error;
+        counters.put(key, counter);
+        ordered.add(counter);
+    }
+
+    private void increment(Counter counter, long weight) {
+        ordered.remove(counter);
+        counter.count += weight;
+        ordered.add(counter);
+    }
+
+    public record Estimate(StatsKey key, long count, long error, boolean guaranteed) {
+    }
+
+    private static class Counter {
+        private final StatsKey key;
+        private final long seq;
+        private long count;
+        private long error;
+
+        private Counter(StatsKey key, long seq) {
+            this.key = key;
+            this.seq = seq;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.storage;
+
+import ru.practicum.StatsKey;
+import ru.practicum.TimeBucket;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.ViewStatsPointDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface HitStorage {
+    /**
+     * Наибольший вес одной записи, который сохраняют все реализации хранилища.
+     */
+    int MAX_WEIGHT = 1 << 24;
+
+    void append(List<EndpointHit> hits);
+
+    List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    List<ViewStatsDto> getStatsUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    default void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Consumer<ViewStatsDto> consumer) {
+        getStats(start, end, uris).forEach(consumer);
+    }
+
+    default void streamStatsUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                     Consumer<ViewStatsDto> consumer) {
+        getStatsUniqueIp(start, end, uris).forEach(consumer);
+    }
+
+    Map<StatsKey, HyperLogLog> getIpSketches(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    List<ViewStatsPointDto> getTimeSeries(LocalDateTime start, LocalDateTime end, TimeBucket bucket, boolean unique,
+                                          List<String> uris);
+
+    SpaceSaving getTopSketch(LocalDateTime from, LocalDateTime to);
+
+    Map<StatsKey, Set<String>> findIps(LocalDateTime start, LocalDateTime endExclusive, Map<StatsKey, Set<String>> ips);
+
+    default LocalDateTime rawHorizon() {
+        return null;
+    }
+
+    void scan(LocalDateTime from, Consumer<EndpointHit> consumer);
+}
@@ -0,0 +1,185 @@
+package ru.practicum.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.HitRetentionPolicy;
+import ru.practicum.HitRollupRepository;
+import ru.practicum.HitSketchRepository;
+import ru.practicum.HitTimeSeriesRepository;
+import ru.practicum.HitTopRepository;
+import ru.practicum.IpAddresses;
+import ru.practicum.StatsKey;
+import ru.practicum.StatsRepository;
+import ru.practicum.TimeBucket;
+import ru.practicum.UriDictionary;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.ViewStatsPointDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "stats.storage.type", havingValue = "jdbc", matchIfMissing = true)
+@DependsOn("hitSchemaMigration")
+public class JdbcHitStorage implements HitStorage {
+    private static final int IP_PAIR_CHUNK_SIZE = 5000;
+    private static final String IP_PAIR = "(CAST(? AS VARCHAR(128)), CAST(? AS INTEGER), CAST(? AS BYTEA))";
+    private static final Comparator<ViewStatsPointDto> POINT_ORDER = Comparator.comparing(ViewStatsPointDto::getApp)
+            .thenComparing(ViewStatsPointDto::getUri)
+            .thenComparing(ViewStatsPointDto::getBucket);
+
+    private final StatsRepository repository;
+    private final HitRollupRepository rollupRepository;
+    private final HitSketchRepository sketchRepository;
+    private final HitTopRepository topRepository;
+    private final HitTimeSeriesRepository timeSeriesRepository;
+    private final UriDictionary uriDictionary;
+    private final HitRetentionPolicy retention;
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+
+    @Override
+    public void append(List<EndpointHit> hits) {
+        uriDictionary.register(hits.stream().map(EndpointHit::getUri).toList());
+        for (EndpointHit hit : hits) {
+            hit.setUriId(uriDictionary.idOf(hit.getUri()));
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            repository.saveAllInBatch(hits);
+            rollupRepository.increment(hits);
+            sketchRepository.merge(hits);
+            topRepository.merge(hits);
+        });
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return rollupRepository.getStats(start, end, uris);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStatsUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return repository.getStatsUniqueIp(start, end);
+        }
+        return repository.getStatsUniqueIpForUris(start, end, uris);
+    }
+
+    @Override
+    public void streamStats(LocalDateTime start, LocalDateTime end, List<String> uris, Consumer<ViewStatsDto> consumer) {
+        rollupRepository.streamStats(start, end, uris, consumer);
+    }
+
+    @Override
+    public void streamStatsUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                    Consumer<ViewStatsDto> consumer) {
+        try (Stream<ViewStatsDto> stats = uris == null || uris.isEmpty()
+                ? repository.streamStatsUniqueIp(start, end)
+                : repository.streamStatsUniqueIpForUris(start, end, uris)) {
+            stats.forEach(consumer);
+        }
+    }
+
+    @Override
+    public Map<StatsKey, HyperLogLog> getIpSketches(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return sketchRepository.getSketches(start, end, uris);
+    }
+
+    @Override
+    public List<ViewStatsPointDto> getTimeSeries(LocalDateTime start, LocalDateTime end, TimeBucket bucket,
+                                                 boolean unique, List<String> uris) {
+        if (!unique) {
+            return timeSeriesRepository.getTimeSeries(start, end, bucket, uris);
+        }
+        LocalDateTime horizon = retention.rawHorizon();
+        if (horizon == null || !start.isBefore(horizon)) {
+            return timeSeriesRepository.getTimeSeriesUniqueIp(start, end, bucket, uris);
+        }
+        List<ViewStatsPointDto> points = new ArrayList<>(
+                sketchRepository.getTimeSeries(start, end.isBefore(horizon) ? end : horizon, bucket, uris));
+        if (!end.isBefore(horizon)) {
+            points.addAll(timeSeriesRepository.getTimeSeriesUniqueIp(horizon, end, bucket, uris));
+            points.sort(POINT_ORDER);
+        }
+        return points;
+    }
+
+    @Override
+    public LocalDateTime rawHorizon() {
+        return retention.rawHorizon();
+    }
+
+    @Override
+    public SpaceSaving getTopSketch(LocalDateTime from, LocalDateTime to) {
+        return topRepository.getSketch(from, to);
+    }
+
+    @Override
+    public Map<StatsKey, Set<String>> findIps(LocalDateTime start, LocalDateTime endExclusive,
+                                              Map<StatsKey, Set<String>> ips) {
+        Map<String, Integer> uriIds = uriDictionary.lookup(ips.keySet().stream().map(StatsKey::uri).distinct().toList());
+        Map<Integer, String> urisById = new HashMap<>();
+        List<Object> pairs = new ArrayList<>();
+        ips.forEach((key, keyIps) -> {
+            Integer uriId = uriIds.get(key.uri());
+            if (uriId == null) {
+                return;
+            }
+            urisById.put(uriId, key.uri());
+            for (String ip : keyIps) {
+                pairs.add(key.app());
+                pairs.add(uriId);
+                pairs.add(IpAddresses.toBytes(ip));
+            }
+        });
+        Map<StatsKey, Set<String>> found = new HashMap<>();
+        int chunk = IP_PAIR_CHUNK_SIZE * 3;
+        for (int from = 0; from < pairs.size(); from += chunk) {
+            List<Object> args = new ArrayList<>(pairs.subList(from, Math.min(pairs.size(), from + chunk)));
+            String values = String.join(", ", Collections.nCopies(args.size() / 3, IP_PAIR));
+            args.add(Timestamp.valueOf(start));
+            args.add(Timestamp.valueOf(endExclusive));
+            jdbcTemplate.query("SELECT DISTINCT h.app, h.uri_id, h.ip FROM hits h " +
+                    "JOIN (VALUES " + values + ") AS r(app, uri_id, ip) " +
+                    "ON h.uri_id = r.uri_id AND h.app = r.app AND h.ip = r.ip " +
+                    "WHERE h.timestamp >= ? AND h.timestamp < ?", (RowCallbackHandler) rs ->
+                    found.computeIfAbsent(new StatsKey(rs.getString("app"), urisById.get(rs.getInt("uri_id"))),
+                            k -> new HashSet<>()).add(IpAddresses.fromBytes(rs.getBytes("ip"))), args.toArray());
+        }
+        return found;
+    }
+
+    @Override
+    public void scan(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        jdbcTemplate.query("SELECT h.app, u.uri, h.ip, h.timestamp, h.weight FROM hits h " +
+                "JOIN uris u ON u.id = h.uri_id WHERE h.timestamp >= ?", rs -> {
+            consumer.accept(EndpointHit.builder()
+                    .app(rs.getString("app"))
+                    .uri(rs.getString("uri"))
+                    .ip(IpAddresses.fromBytes(rs.getBytes("ip")))
+                    .timestamp(rs.getTimestamp("timestamp").toLocalDateTime())
+                    .weight(rs.getInt("weight"))
+                    .build());
+        }, Timestamp.valueOf(from));
+    }
+}
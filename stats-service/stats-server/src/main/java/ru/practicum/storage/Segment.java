@@ -0,0 +1,302 @@
+package ru.practicum.storage;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.IpAddresses;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+@Slf4j
+class Segment implements AutoCloseable {
+    static final int RECORD_SIZE = 48;
+    private static final int MARKER = 0x48495431;
+    private static final int WEIGHT_OFFSET = 37;
+    private static final int CHECKSUM_OFFSET = 40;
+    static final int MAX_WEIGHT = HitStorage.MAX_WEIGHT;
+    private static final int BLOCK_RECORDS = 1024;
+    private static final byte IP_V4 = 4;
+    private static final byte IP_V6 = 16;
+    private static final byte IP_DICTIONARY = 0;
+
+    @Getter
+    private final long id;
+    private final int capacity;
+    private final FileChannel channel;
+    private final FileChannel dictionaryChannel;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Integer> dictionary = new ConcurrentHashMap<>();
+    private final Map<Integer, String> reverseDictionary = new ConcurrentHashMap<>();
+    private final long[] blockMin;
+    private final long[] blockMax;
+    private volatile int count;
+    private volatile long minTimestamp = Long.MAX_VALUE;
+    private volatile long maxTimestamp = Long.MIN_VALUE;
+
+    private Segment(Path dir, long id, int capacity) throws IOException {
+        this.id = id;
+        this.capacity = capacity;
+        this.channel = FileChannel.open(dir.resolve(String.format("segment-%08d.log", id)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.dictionaryChannel = FileChannel.open(dir.resolve(String.format("segment-%08d.dict", id)),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacity * RECORD_SIZE);
+        int blocks = (capacity + BLOCK_RECORDS - 1) / BLOCK_RECORDS;
+        this.blockMin = new long[blocks];
+        this.blockMax = new long[blocks];
+        Arrays.fill(blockMin, Long.MAX_VALUE);
+        Arrays.fill(blockMax, Long.MIN_VALUE);
+    }
+
+    static Segment open(Path dir, long id, int capacity) {
+        try {
+            Segment segment = new Segment(dir, id, capacity);
+            segment.recover();
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть сегмент " + id, e);
+        }
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith("segment-") && name.endsWith(".log");
+    }
+
+    static long parseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+    }
+
+    boolean append(EndpointHit hit) {
+        int index = count;
+        if (index >= capacity) {
+            return false;
+        }
+        int offset = index * RECORD_SIZE;
+        long timestamp = toMillis(hit.getTimestamp());
+        buffer.putLong(offset + 4, timestamp);
+        buffer.putInt(offset + 12, intern(hit.getApp()));
+        buffer.putInt(offset + 16, intern(hit.getUri()));
+        writeIp(offset + 20, hit.getIp());
+        writeWeight(offset + WEIGHT_OFFSET, hit.getWeight());
+        buffer.putInt(offset, MARKER);
+        buffer.putInt(offset + CHECKSUM_OFFSET, checksum(offset));
+        track(index, timestamp);
+        count = index + 1;
+        return true;
+    }
+
+    boolean overlaps(long from, long to) {
+        return count > 0 && minTimestamp <= to && maxTimestamp >= from;
+    }
+
+    Integer lookup(String value) {
+        return dictionary.get(value);
+    }
+
+    String resolve(int dictionaryId) {
+        return reverseDictionary.get(dictionaryId);
+    }
+
+    void scan(long from, long to, RecordVisitor visitor) {
+        int size = count;
+        for (int block = 0; block * BLOCK_RECORDS < size; block++) {
+            if (blockMax[block] < from || blockMin[block] > to) {
+                continue;
+            }
+            int last = Math.min(size, (block + 1) * BLOCK_RECORDS);
+            for (int index = block * BLOCK_RECORDS; index < last; index++) {
+                int offset = index * RECORD_SIZE;
+                long timestamp = buffer.getLong(offset + 4);
+                if (timestamp >= from && timestamp <= to) {
+                    visitor.visit(offset, buffer.getInt(offset + 12), buffer.getInt(offset + 16), timestamp);
+                }
+            }
+        }
+    }
+
+    String readIp(int offset) {
+        byte kind = buffer.get(offset + 20);
+        if (kind == IP_DICTIONARY) {
+            return resolve(buffer.getInt(offset + 21));
+        }
+        byte[] address = new byte[kind];
+        buffer.get(offset + 21, address);
+        try {
+            return InetAddress.getByAddress(address).getHostAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException("Некорректный адрес в сегменте " + id, e);
+        }
+    }
+
+    int readWeight(int offset) {
+        int extra = (buffer.get(offset + WEIGHT_OFFSET) & 0xFF) << 16
+                | (buffer.get(offset + WEIGHT_OFFSET + 1) & 0xFF) << 8
+                | buffer.get(offset + WEIGHT_OFFSET + 2) & 0xFF;
+        return extra + 1;
+    }
+
+    EndpointHit readHit(int offset, int appId, int uriId, long timestamp) {
+        return EndpointHit.builder()
+                .app(resolve(appId))
+                .uri(resolve(uriId))
+                .ip(readIp(offset))
+                .timestamp(toDateTime(timestamp))
+                .weight(readWeight(offset))
+                .build();
+    }
+
+    LocalDateTime readTimestamp(int offset) {
+        return toDateTime(buffer.getLong(offset + 4));
+    }
+
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.force();
+        dictionaryChannel.force(true);
+        dictionaryChannel.close();
+        channel.close();
+    }
+
+    static long toMillis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime toDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000),
+                (int) Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private void recover() throws IOException {
+        loadDictionary();
+        int index = 0;
+        while (index < capacity && isValid(index * RECORD_SIZE)) {
+            track(index, buffer.getLong(index * RECORD_SIZE + 4));
+            index++;
+        }
+        count = index;
+        byte[] empty = new byte[RECORD_SIZE];
+        for (int offset = index * RECORD_SIZE; offset < capacity * RECORD_SIZE; offset += RECORD_SIZE) {
+            if (buffer.getInt(offset) != 0) {
+                buffer.put(offset, empty);
+            }
+        }
+        log.info("Сегмент {} открыт, записей: {}", id, index);
+    }
+
+    private boolean isValid(int offset) {
+        if (buffer.getInt(offset) != MARKER || buffer.getInt(offset + CHECKSUM_OFFSET) != checksum(offset)) {
+            return false;
+        }
+        boolean ipKnown = buffer.get(offset + 20) != IP_DICTIONARY || reverseDictionary.containsKey(buffer.getInt(offset + 21));
+        return ipKnown && reverseDictionary.containsKey(buffer.getInt(offset + 12))
+                && reverseDictionary.containsKey(buffer.getInt(offset + 16));
+    }
+
+    private void loadDictionary() throws IOException {
+        ByteBuffer content = ByteBuffer.allocate((int) dictionaryChannel.size());
+        dictionaryChannel.read(content, 0);
+        content.flip();
+        long valid = 0;
+        while (content.remaining() >= 2 * Integer.BYTES) {
+            int entryId = content.getInt();
+            int length = content.getInt();
+            if (length < 0 || content.remaining() < length) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            content.get(bytes);
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            dictionary.put(value, entryId);
+            reverseDictionary.put(entryId, value);
+            valid = content.position();
+        }
+        dictionaryChannel.truncate(valid);
+        dictionaryChannel.position(valid);
+    }
+
+    private int intern(String value) {
+        Integer known = dictionary.get(value);
+        if (known != null) {
+            return known;
+        }
+        int entryId = dictionary.size();
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(2 * Integer.BYTES + bytes.length)
+                .putInt(entryId)
+                .putInt(bytes.length)
+                .put(bytes)
+                .flip();
+        try {
+            while (entry.hasRemaining()) {
+                dictionaryChannel.write(entry);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать словарь сегмента " + id, e);
+        }
+        reverseDictionary.put(entryId, value);
+        dictionary.put(value, entryId);
+        return entryId;
+    }
+
+    private void writeIp(int offset, String ip) {
+        byte[] address = IpAddresses.parseLiteral(ip);
+        if (address == null) {
+            buffer.put(offset, IP_DICTIONARY);
+            buffer.putInt(offset + 1, intern(ip));
+            return;
+        }
+        buffer.put(offset, address.length == 4 ? IP_V4 : IP_V6);
+        buffer.put(offset + 1, address);
+    }
+
+    private void writeWeight(int offset, int weight) {
+        if (weight < 1 || weight > MAX_WEIGHT) {
+            throw new IllegalArgumentException("Вес записи должен быть в диапазоне от 1 до " + MAX_WEIGHT);
+        }
+        int extra = weight - 1;
+        buffer.put(offset, (byte) (extra >>> 16));
+        buffer.put(offset + 1, (byte) (extra >>> 8));
+        buffer.put(offset + 2, (byte) extra);
+    }
+
+    private void track(int index, long timestamp) {
+        int block = index / BLOCK_RECORDS;
+        blockMin[block] = Math.min(blockMin[block], timestamp);
+        blockMax[block] = Math.max(blockMax[block], timestamp);
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+    }
+
+    private int checksum(int offset) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, CHECKSUM_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(int offset, int appId, int uriId, long timestamp);
+    }
+}
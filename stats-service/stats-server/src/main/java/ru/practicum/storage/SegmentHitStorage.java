@@ -0,0 +1,240 @@
+package ru.practicum.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.StatsKey;
+import ru.practicum.TimeBucket;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.ViewStatsPointDto;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.sketch.HyperLogLog;
+import ru.practicum.sketch.SpaceSaving;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "stats.storage.type", havingValue = "segment")
+public class SegmentHitStorage implements HitStorage {
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Object appendLock = new Object();
+    private final Path dir;
+    private final int recordsPerSegment;
+    private final int sketchPrecision;
+    private final int topCapacity;
+
+    public SegmentHitStorage(@Value("${stats.storage.segment.dir:./data/segments}") Path dir,
+                             @Value("${stats.storage.segment.records-per-segment:1000000}") int recordsPerSegment,
+                             @Value("${stats.sketch.precision:12}") int sketchPrecision,
+                             @Value("${stats.top.capacity:1000}") int topCapacity) {
+        this.dir = dir;
+        this.recordsPerSegment = recordsPerSegment;
+        this.sketchPrecision = sketchPrecision;
+        this.topCapacity = topCapacity;
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(Segment::isSegmentFile)
+                    .map(Segment::parseId)
+                    .sorted()
+                    .forEach(id -> segments.add(Segment.open(dir, id, recordsPerSegment)));
+        }
+        if (segments.isEmpty()) {
+            segments.add(Segment.open(dir, 1, recordsPerSegment));
+        }
+        log.info("Хранилище сегментов открыто в {}, сегментов: {}", dir, segments.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        synchronized (appendLock) {
+            for (Segment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException e) {
+                    log.error("Не удалось закрыть сегмент {}", segment.getId(), e);
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stats.storage.segment.force-interval:1000}")
+    public void force() {
+        synchronized (appendLock) {
+            segments.getLast().force();
+        }
+    }
+
+    @Override
+    public void append(List<EndpointHit> hits) {
+        synchronized (appendLock) {
+            Segment active = segments.getLast();
+            for (EndpointHit hit : hits) {
+                if (!active.append(hit)) {
+                    active.force();
+                    active = Segment.open(dir, active.getId() + 1, recordsPerSegment);
+                    segments.add(active);
+                    active.append(hit);
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<ViewStatsDto> getStats(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatsKey, Long> counts = new HashMap<>();
+        forEachRecord(start, end, uris, (segment, offset, key) -> counts.merge(key, (long) segment.readWeight(offset), Long::sum));
+        return toSortedStats(counts);
+    }
+
+    @Override
+    public List<ViewStatsDto> getStatsUniqueIp(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatsKey, Set<String>> ips = new HashMap<>();
+        forEachRecord(start, end, uris,
+                (segment, offset, key) -> ips.computeIfAbsent(key, k -> new HashSet<>()).add(segment.readIp(offset)));
+        Map<StatsKey, Long> counts = new HashMap<>();
+        ips.forEach((key, set) -> counts.put(key, (long) set.size()));
+        return toSortedStats(counts);
+    }
+
+    @Override
+    public Map<StatsKey, HyperLogLog> getIpSketches(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        Map<StatsKey, HyperLogLog> sketches = new HashMap<>();
+        forEachRecord(start, end, uris, (segment, offset, key) ->
+                sketches.computeIfAbsent(key, k -> new HyperLogLog(sketchPrecision)).add(segment.readIp(offset)));
+        return sketches;
+    }
+
+    @Override
+    public List<ViewStatsPointDto> getTimeSeries(LocalDateTime start, LocalDateTime end, TimeBucket bucket,
+                                                 boolean unique, List<String> uris) {
+        Map<StatsKey, TreeMap<LocalDateTime, Set<String>>> ips = new HashMap<>();
+        Map<StatsKey, TreeMap<LocalDateTime, Long>> counts = new HashMap<>();
+        forEachRecord(start, end, uris, (segment, offset, key) -> {
+            LocalDateTime point = bucket.truncate(segment.readTimestamp(offset));
+            if (unique) {
+                ips.computeIfAbsent(key, k -> new TreeMap<>())
+                        .computeIfAbsent(point, p -> new HashSet<>())
+                        .add(segment.readIp(offset));
+            } else {
+                counts.computeIfAbsent(key, k -> new TreeMap<>()).merge(point, (long) segment.readWeight(offset), Long::sum);
+            }
+        });
+        ips.forEach((key, points) -> {
+            TreeMap<LocalDateTime, Long> sizes = new TreeMap<>();
+            points.forEach((point, set) -> sizes.put(point, (long) set.size()));
+            counts.put(key, sizes);
+        });
+        List<ViewStatsPointDto> series = new ArrayList<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(StatsKey::app).thenComparing(StatsKey::uri)))
+                .forEach(e -> e.getValue().forEach((point, hits) ->
+                        series.add(new ViewStatsPointDto(e.getKey().app(), e.getKey().uri(), point, hits))));
+        return series;
+    }
+
+    @Override
+    public SpaceSaving getTopSketch(LocalDateTime from, LocalDateTime to) {
+        Map<StatsKey, Long> counts = new HashMap<>();
+        forEachRecord(from, to.minusNanos(1), null, (segment, offset, key) -> counts.merge(key, (long) segment.readWeight(offset), Long::sum));
+        SpaceSaving sketch = new SpaceSaving(topCapacity);
+        counts.forEach(sketch::add);
+        return sketch;
+    }
+
+    @Override
+    public Map<StatsKey, Set<String>> findIps(LocalDateTime start, LocalDateTime endExclusive,
+                                              Map<StatsKey, Set<String>> ips) {
+        List<String> uris = ips.keySet().stream().map(StatsKey::uri).distinct().toList();
+        Map<StatsKey, Set<String>> found = new HashMap<>();
+        forEachRecord(start, endExclusive.minusNanos(1_000_000), uris, (segment, offset, key) -> {
+            Set<String> wanted = ips.get(key);
+            if (wanted == null) {
+                return;
+            }
+            String ip = segment.readIp(offset);
+            if (wanted.contains(ip)) {
+                found.computeIfAbsent(key, k -> new HashSet<>()).add(ip);
+            }
+        });
+        return found;
+    }
+
+    @Override
+    public void scan(LocalDateTime from, Consumer<EndpointHit> consumer) {
+        long fromMillis = Segment.toMillis(from);
+        for (Segment segment : segments) {
+            if (segment.overlaps(fromMillis, Long.MAX_VALUE)) {
+                segment.scan(fromMillis, Long.MAX_VALUE, (offset, appId, uriId, timestamp) ->
+                        consumer.accept(segment.readHit(offset, appId, uriId, timestamp)));
+            }
+        }
+    }
+
+    private void forEachRecord(LocalDateTime start, LocalDateTime end, List<String> uris, KeyedVisitor visitor) {
+        long from = Segment.toMillis(start);
+        long to = Segment.toMillis(end);
+        for (Segment segment : segments) {
+            if (!segment.overlaps(from, to)) {
+                continue;
+            }
+            Set<Integer> uriIds = null;
+            if (uris != null && !uris.isEmpty()) {
+                uriIds = new HashSet<>();
+                for (String uri : uris) {
+                    Integer uriId = segment.lookup(uri);
+                    if (uriId != null) {
+                        uriIds.add(uriId);
+                    }
+                }
+                if (uriIds.isEmpty()) {
+                    continue;
+                }
+            }
+            Set<Integer> filter = uriIds;
+            Map<Long, StatsKey> keys = new HashMap<>();
+            segment.scan(from, to, (offset, appId, uriId, timestamp) -> {
+                if (filter == null || filter.contains(uriId)) {
+                    StatsKey key = keys.computeIfAbsent(((long) appId << 32) | uriId,
+                            k -> new StatsKey(segment.resolve(appId), segment.resolve(uriId)));
+                    visitor.visit(segment, offset, key);
+                }
+            });
+        }
+    }
+
+    private static List<ViewStatsDto> toSortedStats(Map<StatsKey, Long> counts) {
+        List<ViewStatsDto> stats = new ArrayList<>(counts.size());
+        counts.forEach((key, hits) -> stats.add(new ViewStatsDto(key.app(), key.uri(), hits)));
+        stats.sort(Comparator.comparing(ViewStatsDto::getHits).reversed());
+        return stats;
+    }
+
+    @FunctionalInterface
+    private interface KeyedVisitor {
+        void visit(Segment segment, int offset, StatsKey key);
+    }
+}
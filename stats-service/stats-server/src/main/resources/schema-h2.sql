@@ -0,0 +1,52 @@
+CREATE TABLE IF NOT EXISTS uris (
+  id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  uri VARCHAR(512) NOT NULL UNIQUE
+);
+
+CREATE TABLE IF NOT EXISTS hits (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  app VARCHAR(128) NOT NULL,
+  uri_id INTEGER NOT NULL,
+  ip BYTEA NOT NULL,
+  timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  weight INTEGER NOT NULL DEFAULT 1
+);
+
+CREATE INDEX IF NOT EXISTS hits_timestamp_idx ON hits (timestamp);
+
+CREATE TABLE IF NOT EXISTS hits_rollup (
+  app VARCHAR(128) NOT NULL,
+  uri_id INTEGER NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  hits BIGINT NOT NULL,
+  PRIMARY KEY (app, uri_id, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_rollup_bucket_idx ON hits_rollup (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_ip_sketch (
+  app VARCHAR(128) NOT NULL,
+  uri_id INTEGER NOT NULL,
+  bucket TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  sketch BYTEA NOT NULL,
+  PRIMARY KEY (app, uri_id, bucket)
+);
+
+CREATE INDEX IF NOT EXISTS hits_ip_sketch_bucket_idx ON hits_ip_sketch (bucket);
+
+CREATE TABLE IF NOT EXISTS hits_top_sketch (
+  bucket TIMESTAMP WITHOUT TIME ZONE PRIMARY KEY,
+  sketch BYTEA NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hits_compaction (
+  tier VARCHAR(16) PRIMARY KEY,
+  compacted_before TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS hits_backfill (
+  target VARCHAR(16) PRIMARY KEY,
+  backfill_until TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  max_id BIGINT NOT NULL,
+  backfilled_before TIMESTAMP WITHOUT TIME ZONE
+);
\ No newline at end of file
@@ -1,9 +0,0 @@
-DROP TABLE IF EXISTS hits CASCADE;
-
-CREATE TABLE IF NOT EXISTS hits (
-  id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
-  app VARCHAR(128) NOT NULL,
-  uri VARCHAR(512) NOT NULL,
-  ip VARCHAR(32) NOT NULL,
-  timestamp TIMESTAMP WITHOUT TIME ZONE NOT NULL
-);
\ No newline at end of file
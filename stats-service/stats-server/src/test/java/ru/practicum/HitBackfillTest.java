@@ -0,0 +1,135 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.sketch.HyperLogLog;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-backfill;DB_CLOSE_DELAY=-1",
+        "stats.backfill.enabled=false"
+})
+@ActiveProfiles("check")
+class HitBackfillTest {
+    private static final LocalDateTime LEGACY = LocalDateTime.of(2024, 1, 10, 12, 15, 30);
+    private static final LocalDateTime APPENDED = LocalDateTime.of(2024, 1, 10, 14, 0);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HitBackfillJob backfillJob;
+    @Autowired
+    private HitRollupRepository rollupRepository;
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("hits", "hits_rollup", "hits_ip_sketch", "hits_top_sketch", "hits_backfill", "uris")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void backfillsRollupsAndSketchesForHitsWrittenBeforeThem() {
+        jdbcTemplate.update("INSERT INTO uris (id, uri) VALUES (1, '/events/1')");
+        insertHit("192.168.0.1", LEGACY, 1);
+        insertHit("192.168.0.1", LEGACY.plusMinutes(1), 2);
+        insertHit("192.168.0.2", LEGACY.plusMinutes(1), 1);
+        insertHit("192.168.0.3", APPENDED, 1);
+        jdbcTemplate.update("INSERT INTO hits_rollup (app, uri_id, bucket, hits) VALUES ('ewm-main-service', 1, ?, 1)",
+                Timestamp.valueOf(APPENDED));
+        HyperLogLog appended = new HyperLogLog(12);
+        appended.add("192.168.0.3");
+        jdbcTemplate.update("INSERT INTO hits_ip_sketch (app, uri_id, bucket, sketch) " +
+                "VALUES ('ewm-main-service', 1, ?, ?)", Timestamp.valueOf(APPENDED), appended.toBytes());
+
+        backfillJob.backfill();
+        backfillJob.backfill();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(hits) FROM hits_rollup", Long.class)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits_rollup", Long.class)).isEqualTo(3);
+        assertThat(sketchEstimate(LEGACY.withMinute(0).withSecond(0))).isEqualTo(2);
+        assertThat(sketchEstimate(APPENDED)).isEqualTo(1);
+    }
+
+    @Test
+    void resumesFromStoredWatermark() {
+        jdbcTemplate.update("INSERT INTO uris (id, uri) VALUES (1, '/events/1')");
+        insertHit("192.168.0.1", LEGACY, 1);
+        insertHit("192.168.0.2", LEGACY.plusMinutes(1), 2);
+        jdbcTemplate.update("INSERT INTO hits_rollup (app, uri_id, bucket, hits) VALUES ('ewm-main-service', 1, ?, 1)",
+                Timestamp.valueOf(LEGACY.truncatedTo(ChronoUnit.MINUTES)));
+        jdbcTemplate.update("INSERT INTO hits_backfill (target, backfill_until, max_id, backfilled_before) " +
+                        "VALUES ('rollup', ?, ?, ?)", Timestamp.valueOf(APPENDED), Long.MAX_VALUE,
+                Timestamp.valueOf(LEGACY.plusMinutes(1).truncatedTo(ChronoUnit.MINUTES)));
+
+        backfillJob.backfill();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT SUM(hits) FROM hits_rollup", Long.class)).isEqualTo(3);
+        assertThat(jdbcTemplate.queryForObject("SELECT backfilled_before FROM hits_backfill WHERE target = 'rollup'",
+                Timestamp.class)).isEqualTo(Timestamp.valueOf(APPENDED.plusMinutes(1)));
+    }
+
+    @Test
+    void skipsHitsWrittenAfterBackfillStarted() {
+        jdbcTemplate.update("INSERT INTO uris (id, uri) VALUES (1, '/events/1')");
+        insertHit("192.168.0.1", LEGACY, 1);
+        jdbcTemplate.update("INSERT INTO hits_backfill (target, backfill_until, max_id) VALUES ('rollup', ?, 0)",
+                Timestamp.valueOf(APPENDED));
+
+        backfillJob.backfill();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits_rollup", Long.class)).isZero();
+    }
+
+    @Test
+    void rollupStatsMatchRawHitsBeforeAndAfterBackfill() {
+        jdbcTemplate.update("INSERT INTO uris (id, uri) VALUES (1, '/events/1')");
+        insertHit("192.168.0.1", LEGACY, 1);
+        insertHit("192.168.0.2", LEGACY.plusMinutes(1), 2);
+        insertHit("192.168.0.3", APPENDED.plusSeconds(5), 1);
+        insertHit("192.168.0.4", APPENDED.plusSeconds(40), 3);
+        jdbcTemplate.update("INSERT INTO hits_rollup (app, uri_id, bucket, hits) VALUES ('ewm-main-service', 1, ?, 3)",
+                Timestamp.valueOf(APPENDED));
+        List<LocalDateTime[]> ranges = List.of(
+                new LocalDateTime[]{LEGACY.minusHours(1), APPENDED.plusHours(1)},
+                new LocalDateTime[]{LEGACY.plusSeconds(10), APPENDED.plusSeconds(30)},
+                new LocalDateTime[]{APPENDED, APPENDED.plusMinutes(1)});
+        List<Long> expected = List.of(7L, 3L, 4L);
+
+        assertThat(ranges.stream().map(this::rollupHits).toList()).isEqualTo(expected);
+
+        backfillJob.backfill();
+
+        assertThat(rollupRepository.rawBefore()).isNull();
+        assertThat(ranges.stream().map(this::rollupHits).toList()).isEqualTo(expected);
+        assertThat(jdbcTemplate.queryForObject("SELECT hits FROM hits_rollup WHERE bucket = ?", Long.class,
+                Timestamp.valueOf(APPENDED))).isEqualTo(4);
+    }
+
+    private long rollupHits(LocalDateTime[] range) {
+        return rollupRepository.getStats(range[0], range[1], List.of("/events/1")).stream()
+                .mapToLong(ViewStatsDto::getHits)
+                .sum();
+    }
+
+    private void insertHit(String ip, LocalDateTime timestamp, int weight) {
+        jdbcTemplate.update("INSERT INTO hits (app, uri_id, ip, timestamp, weight) VALUES ('ewm-main-service', 1, ?, ?, ?)",
+                IpAddresses.toBytes(ip), Timestamp.valueOf(timestamp), weight);
+    }
+
+    private long sketchEstimate(LocalDateTime bucket) {
+        byte[] sketch = jdbcTemplate.queryForObject("SELECT sketch FROM hits_ip_sketch WHERE bucket = ?", byte[].class,
+                Timestamp.valueOf(bucket));
+        return HyperLogLog.fromBytes(sketch).estimate();
+    }
+}
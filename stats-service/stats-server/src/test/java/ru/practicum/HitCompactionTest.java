@@ -0,0 +1,113 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-compaction;DB_CLOSE_DELAY=-1",
+        "stats.ingest.async.enabled=false",
+        "stats.cache.enabled=false",
+        "stats.backfill.enabled=false",
+        "stats.compaction.enabled=true",
+        "stats.compaction.hourly-after-days=30",
+        "stats.compaction.daily-after-days=60"
+})
+@ActiveProfiles("check")
+class HitCompactionTest {
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final List<String> URIS = List.of("/events/1", "/events/2");
+    private static final List<Integer> DAYS_AGO = List.of(90, 45, 10);
+
+    @Autowired
+    private StatsService service;
+    @Autowired
+    private HitBackfillJob backfillJob;
+    @Autowired
+    private HitCompactionJob compactionJob;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : List.of("hits", "hits_rollup", "hits_ip_sketch", "hits_top_sketch", "hits_backfill",
+                "hits_compaction")) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void refusesToCompactBeforeBackfillCompletes() {
+        seed();
+        long raw = rawHits();
+
+        compactionJob.compact();
+
+        assertThat(rawHits()).isEqualTo(raw);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits_compaction", Long.class)).isZero();
+    }
+
+    @Test
+    void statsAreTheSameBeforeAndAfterCompaction() {
+        seed();
+        backfillJob.backfill();
+        List<Object> before = snapshot();
+
+        compactionJob.compact();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM hits", Timestamp.class))
+                .isAfterOrEqualTo(Timestamp.valueOf(TODAY.minusDays(30).atStartOfDay()));
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits_compaction", Long.class)).isEqualTo(2);
+        assertThat(snapshot()).isEqualTo(before);
+    }
+
+    private void seed() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int daysAgo : DAYS_AGO) {
+            LocalDateTime day = TODAY.minusDays(daysAgo).atTime(9, 0);
+            for (int i = 0; i < 60; i++) {
+                batch.add(EndpointHitDto.builder()
+                        .app("ewm-main-service")
+                        .uri(URIS.get(i % 3 == 0 ? 1 : 0))
+                        .ip("10.0." + daysAgo + "." + i % 5)
+                        .timestamp(day.plusMinutes(i * 7L).plusSeconds(i))
+                        .build());
+            }
+        }
+        service.createNewEndpointHits(batch);
+    }
+
+    private List<Object> snapshot() {
+        List<Object> results = new ArrayList<>();
+        for (LocalDateTime[] range : List.of(
+                range(100, 0),
+                range(91, 89),
+                range(46, 44),
+                range(11, 9))) {
+            results.add(service.getStats(range[0], range[1], false, false, URIS));
+            results.add(service.getStats(range[0], range[1], true, true, URIS));
+            results.add(service.getTopStats(range[0], range[1], 10));
+        }
+        return results;
+    }
+
+    private static LocalDateTime[] range(int fromDaysAgo, int toDaysAgo) {
+        return new LocalDateTime[]{TODAY.minusDays(fromDaysAgo).atStartOfDay(),
+                TODAY.minusDays(toDaysAgo).atStartOfDay()};
+    }
+
+    private long rawHits() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM hits", Long.class);
+    }
+}
@@ -0,0 +1,128 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitPartitionManagerTest {
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final DatabaseDialect dialect = mock(DatabaseDialect.class);
+
+    @BeforeEach
+    void postgres() {
+        when(dialect.isPostgres()).thenReturn(true);
+    }
+
+    @Test
+    void createsMissingPartitionsAhead() {
+        partitions(TODAY);
+
+        manager(2, 0).init();
+
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE " + partition(TODAY)));
+        verify(jdbcTemplate).execute(create(TODAY.plusDays(1)));
+        verify(jdbcTemplate).execute(attach(TODAY.plusDays(1)));
+        verify(jdbcTemplate).execute(create(TODAY.plusDays(2)));
+        verify(jdbcTemplate).execute(attach(TODAY.plusDays(2)));
+        verify(jdbcTemplate, never()).execute(startsWith("CREATE TABLE " + partition(TODAY.plusDays(3))));
+    }
+
+    @Test
+    void movesDefaultPartitionRowsIntoCreatedPartition() {
+        LocalDate past = TODAY.minusDays(5);
+        partitions(TODAY);
+        doReturn(List.of(past)).when(jdbcTemplate)
+                .query(eq("SELECT DISTINCT CAST(timestamp AS DATE) FROM hits_default"), any(RowMapper.class));
+
+        manager(0, 0).init();
+
+        verify(jdbcTemplate).execute(create(past));
+        verify(jdbcTemplate).update(startsWith("WITH moved AS (DELETE FROM hits_default"),
+                eq(Timestamp.valueOf(past.atStartOfDay())), eq(Timestamp.valueOf(past.plusDays(1).atStartOfDay())));
+        verify(jdbcTemplate).execute(attach(past));
+    }
+
+    @Test
+    void retentionDropsOldPartitionsAndDerivedRows() {
+        LocalDate cutoff = TODAY.minusDays(30);
+        partitions(cutoff.minusDays(1), cutoff, TODAY);
+
+        manager(0, 30).maintain();
+
+        Timestamp before = Timestamp.valueOf(cutoff.atStartOfDay());
+        verify(jdbcTemplate).execute("DROP TABLE " + partition(cutoff.minusDays(1)));
+        verify(jdbcTemplate, never()).execute("DROP TABLE " + partition(cutoff));
+        verify(jdbcTemplate).update("DELETE FROM hits_default WHERE timestamp < ?", before);
+        verify(jdbcTemplate).update("DELETE FROM hits_rollup WHERE bucket < ?", before);
+        verify(jdbcTemplate).update("DELETE FROM hits_ip_sketch WHERE bucket < ?", before);
+        verify(jdbcTemplate).update("DELETE FROM hits_top_sketch WHERE bucket < ?", before);
+    }
+
+    @Test
+    void migratesUnpartitionedTableAfterStartup() throws InterruptedException {
+        LocalDate legacy = TODAY.minusDays(3);
+        partitions(TODAY);
+        when(jdbcTemplate.queryForObject("SELECT to_regclass('hits_unpartitioned') IS NOT NULL", Boolean.class))
+                .thenReturn(true);
+        doReturn(List.of(List.of(legacy, legacy))).when(jdbcTemplate)
+                .query(startsWith("SELECT MIN(timestamp), MAX(timestamp) FROM hits_unpartitioned"), any(RowMapper.class));
+        HitPartitionManager manager = manager(0, 0);
+
+        manager.init();
+
+        verify(jdbcTemplate).execute(startsWith("SELECT setval('hits_seq'"));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT INTO hits "), any(), any());
+
+        manager.start();
+        manager.awaitMigration();
+        manager.stop();
+
+        verify(jdbcTemplate).execute(create(legacy));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO hits "),
+                eq(Timestamp.valueOf(legacy.atStartOfDay())), eq(Timestamp.valueOf(legacy.plusDays(1).atStartOfDay())));
+        verify(jdbcTemplate).execute("DROP TABLE hits_unpartitioned");
+    }
+
+    private HitPartitionManager manager(int daysAhead, int retentionDays) {
+        return new HitPartitionManager(jdbcTemplate, mock(PlatformTransactionManager.class), dialect,
+                daysAhead, retentionDays);
+    }
+
+    private void partitions(LocalDate... days) {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class)))
+                .thenReturn(Arrays.stream(days).map(HitPartitionManagerTest::partition).toList());
+    }
+
+    private static String partition(LocalDate day) {
+        return "hits_p" + day.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+    }
+
+    private static String create(LocalDate day) {
+        return "CREATE TABLE " + partition(day) + " (LIKE hits INCLUDING DEFAULTS INCLUDING CONSTRAINTS)";
+    }
+
+    private static String attach(LocalDate day) {
+        return "ALTER TABLE hits ATTACH PARTITION " + partition(day) +
+                " FOR VALUES FROM ('" + day + "') TO ('" + day.plusDays(1) + "')";
+    }
+}
@@ -0,0 +1,64 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-retention;DB_CLOSE_DELAY=-1",
+        "stats.backfill.enabled=false",
+        "stats.partition.retention-days=30"
+})
+@ActiveProfiles("check")
+class HitRetentionTest {
+    private static final List<String> TABLES = List.of("hits", "hits_rollup", "hits_ip_sketch", "hits_top_sketch");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HitPartitionManager partitionManager;
+
+    @AfterEach
+    void cleanUp() {
+        for (String table : TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table);
+        }
+    }
+
+    @Test
+    void removesRawHitsAndAggregatesOlderThanRetention() {
+        LocalDateTime cutoff = LocalDate.now().minusDays(30).atStartOfDay();
+        insertDay(cutoff.minusMinutes(1));
+        insertDay(cutoff);
+
+        partitionManager.maintain();
+
+        for (String table : TABLES) {
+            String column = "hits".equals(table) ? "timestamp" : "bucket";
+            assertThat(jdbcTemplate.queryForList("SELECT " + column + " FROM " + table, Timestamp.class))
+                    .as(table)
+                    .containsExactly(Timestamp.valueOf(cutoff));
+        }
+    }
+
+    private void insertDay(LocalDateTime bucket) {
+        Timestamp timestamp = Timestamp.valueOf(bucket);
+        jdbcTemplate.update("INSERT INTO hits (app, uri_id, ip, timestamp) VALUES ('ewm-main-service', 1, ?, ?)",
+                IpAddresses.toBytes("192.168.0.1"), timestamp);
+        jdbcTemplate.update("INSERT INTO hits_rollup (app, uri_id, bucket, hits) VALUES ('ewm-main-service', 1, ?, 1)",
+                timestamp);
+        jdbcTemplate.update("INSERT INTO hits_ip_sketch (app, uri_id, bucket, sketch) VALUES ('ewm-main-service', 1, ?, ?)",
+                timestamp, new byte[]{1});
+        jdbcTemplate.update("INSERT INTO hits_top_sketch (bucket, sketch) VALUES (?, ?)", timestamp, new byte[]{1});
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:stats-migration;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("check")
+class HitSchemaMigrationTest {
+    private static final List<String> IPS = List.of("192.168.0.1", "2001:db8::1", "123", "192.168.0.1");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private HitSchemaMigration migration;
+
+    @AfterEach
+    void dropLegacyTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS hits_unpartitioned");
+    }
+
+    @Test
+    void convertsTextualIpsToBinary() {
+        jdbcTemplate.execute("CREATE TABLE hits_unpartitioned (id BIGINT PRIMARY KEY, app VARCHAR(128) NOT NULL, " +
+                "uri VARCHAR(512) NOT NULL, ip VARCHAR(64) NOT NULL, timestamp TIMESTAMP NOT NULL)");
+        for (int i = 0; i < IPS.size(); i++) {
+            jdbcTemplate.update("INSERT INTO hits_unpartitioned (id, app, uri, ip, timestamp) " +
+                    "VALUES (?, 'ewm-main-service', '/events/1', ?, ?)", i, IPS.get(i), Timestamp.valueOf(LocalDateTime.now()));
+        }
+
+        migration.migrate();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT id, ip FROM hits_unpartitioned ORDER BY id");
+        assertThat(rows).hasSize(IPS.size());
+        for (Map<String, Object> row : rows) {
+            String ip = IPS.get(((Number) row.get("ID")).intValue());
+            assertThat((byte[]) row.get("IP")).isEqualTo(IpAddresses.toBytes(ip));
+        }
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.tables " +
+                "WHERE LOWER(table_name) = 'hits_ip_migration'", Long.class)).isZero();
+    }
+}
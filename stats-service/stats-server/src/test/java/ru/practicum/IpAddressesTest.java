@@ -0,0 +1,40 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.mapper.EndpointHitMapper;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IpAddressesTest {
+    @Test
+    void canonicalizesIpv6Spellings() {
+        String canonical = IpAddresses.canonical("2001:db8::1");
+
+        assertThat(IpAddresses.canonical("2001:DB8:0:0:0:0:0:1")).isEqualTo(canonical);
+        assertThat(IpAddresses.canonical("2001:0db8::0001")).isEqualTo(canonical);
+        assertThat(IpAddresses.fromBytes(IpAddresses.toBytes("2001:DB8::1"))).isEqualTo(canonical);
+    }
+
+    @Test
+    void keepsNonDottedQuadDigitsVerbatim() {
+        assertThat(IpAddresses.parseLiteral("123")).isNull();
+        assertThat(IpAddresses.parseLiteral("10.1")).isNull();
+        assertThat(IpAddresses.parseLiteral("256.0.0.1")).isNull();
+        assertThat(IpAddresses.canonical("123")).isEqualTo("123");
+        assertThat(IpAddresses.fromBytes(IpAddresses.toBytes("123"))).isEqualTo("123");
+        assertThat(IpAddresses.fromBytes(IpAddresses.toBytes("192.168.0.1"))).isEqualTo("192.168.0.1");
+    }
+
+    @Test
+    void mapperCanonicalizesIpAtIngest() {
+        EndpointHitDto dto = new EndpointHitDto();
+        dto.setApp("ewm-main-service");
+        dto.setUri("/events/1");
+        dto.setIp("2001:DB8:0:0:0:0:0:1");
+        dto.setTimestamp(LocalDateTime.now());
+
+        assertThat(EndpointHitMapper.toModel(dto).getIp()).isEqualTo(IpAddresses.canonical("2001:db8::1"));
+    }
+}
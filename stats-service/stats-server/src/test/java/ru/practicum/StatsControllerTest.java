@@ -0,0 +1,170 @@
+package ru.practicum;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-controller;DB_CLOSE_DELAY=-1",
+        "stats.ingest.async.enabled=false",
+        "stats.cache.enabled=false",
+        "stats.backfill.enabled=false"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("check")
+class StatsControllerTest {
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private StatsService service;
+
+    @Test
+    void streamsStatsOrderedByHitsAcrossPersistedAndHotWindowRows() throws Exception {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<EndpointHitDto> hits = new ArrayList<>();
+        hits.addAll(hits("/stream/1", now.minusHours(1), 0, 4));
+        hits.addAll(hits("/stream/2", now.minusHours(1), 0, 3));
+        hits.addAll(hits("/stream/2", now, 1, 4));
+        hits.addAll(hits("/stream/3", now, 0, 6));
+        hits.addAll(hits("/stream/4", now.minusHours(1), 0, 1));
+        service.createNewEndpointHits(hits);
+
+        assertThat(stream(now.minusDays(1), now.plusMinutes(1), false))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(
+                        tuple("/stream/2", 7L),
+                        tuple("/stream/3", 6L),
+                        tuple("/stream/1", 4L),
+                        tuple("/stream/4", 1L));
+        assertThat(stream(now.minusDays(1), now.plusMinutes(1), true))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(
+                        tuple("/stream/3", 6L),
+                        tuple("/stream/2", 5L),
+                        tuple("/stream/1", 4L),
+                        tuple("/stream/4", 1L));
+    }
+
+    @Test
+    void batchEndpointStoresEveryHitOnceWhenRetried() throws Exception {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<EndpointHitDto> batch = List.of(
+                hit("batch-1", "/batch/1", "10.0.1.1", now, null),
+                hit("batch-2", "/batch/1", "10.0.1.2", now.minusHours(1), 3),
+                hit("batch-3", "/batch/2", "10.0.1.1", now.minusHours(1), null));
+
+        postBatch(batch).andExpect(status().isCreated());
+        postBatch(batch).andExpect(status().isCreated());
+        postBatch(List.of()).andExpect(status().isCreated());
+
+        assertThat(stats(now.minusDays(1), now.plusMinutes(1), "/batch/1", "/batch/2"))
+                .extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/batch/1", 4L), tuple("/batch/2", 1L));
+    }
+
+    @Test
+    void batchWithInvalidHitIsRejectedWhole() throws Exception {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+
+        postBatch(List.of(
+                hit("batch-4", "/batch/3", "10.0.1.1", now, null),
+                hit("batch-5", "/batch/3", "10.0.1.2", now, 0)))
+                .andExpect(status().isBadRequest());
+        postBatch(List.of(hit("batch-6", "/batch/3", "10.0.1.3", now, StatsService.MAX_HIT_WEIGHT + 1)))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/hit/batch").contentType(MediaType.APPLICATION_JSON).content("{\"uri\":\"/batch/3\"}"))
+                .andExpect(status().isBadRequest());
+
+        assertThat(stats(now.minusDays(1), now.plusMinutes(1), "/batch/3")).isEmpty();
+    }
+
+    private ResultActions postBatch(List<EndpointHitDto> hits) throws Exception {
+        return mockMvc.perform(post("/hit/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(hits)));
+    }
+
+    private List<ViewStatsDto> stats(LocalDateTime start, LocalDateTime end, String... uris) throws Exception {
+        String body = mockMvc.perform(get("/stats")
+                        .param("start", start.format(FORMAT))
+                        .param("end", end.format(FORMAT))
+                        .param("uris", uris)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return List.of(objectMapper.readValue(body, ViewStatsDto[].class));
+    }
+
+    private List<ViewStatsDto> stream(LocalDateTime start, LocalDateTime end, boolean unique) throws Exception {
+        MvcResult started = mockMvc.perform(get("/stats")
+                        .param("start", start.format(FORMAT))
+                        .param("end", end.format(FORMAT))
+                        .param("unique", String.valueOf(unique))
+                        .param("uris", "/stream/1", "/stream/2", "/stream/3", "/stream/4")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        List<ViewStatsDto> rows = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            rows.add(objectMapper.readValue(line, ViewStatsDto.class));
+        }
+        return rows;
+    }
+
+    private static EndpointHitDto hit(String hitId, String uri, String ip, LocalDateTime timestamp, Integer weight) {
+        return EndpointHitDto.builder()
+                .hitId(hitId)
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .weight(weight)
+                .build();
+    }
+
+    private static List<EndpointHitDto> hits(String uri, LocalDateTime timestamp, int firstIp, int count) {
+        List<EndpointHitDto> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hits.add(EndpointHitDto.builder()
+                    .app("ewm-main-service")
+                    .uri(uri)
+                    .ip("10.0.0." + (firstIp + i))
+                    .timestamp(timestamp)
+                    .build());
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StatsResultCacheTest {
+    private final StatsResultCache cache = new StatsResultCache(new SimpleMeterRegistry(), true, 100,
+            Duration.ofMinutes(1), Duration.ofMinutes(1));
+    private final AtomicLong loads = new AtomicLong();
+
+    @Test
+    void acceptedHitEvictsOpenEntryForItsUri() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        LocalDateTime end = LocalDateTime.now().plusHours(1);
+
+        assertThat(load(start, end, List.of("/events/1"))).isEqualTo(1);
+        assertThat(load(start, end, List.of("/events/1"))).isEqualTo(1);
+
+        cache.invalidate(List.of(hit("/events/1", LocalDateTime.now())));
+
+        assertThat(load(start, end, List.of("/events/1"))).isEqualTo(2);
+    }
+
+    @Test
+    void acceptedHitKeepsEntriesForOtherUrisAndRanges() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        LocalDateTime end = LocalDateTime.now().plusHours(1);
+        LocalDateTime settledEnd = LocalDateTime.now().minusDays(1);
+
+        load(start, end, List.of("/events/2"));
+        load(settledEnd.minusDays(1), settledEnd, List.of("/events/1"));
+
+        cache.invalidate(List.of(hit("/events/1", LocalDateTime.now())));
+
+        assertThat(load(start, end, List.of("/events/2"))).isEqualTo(1);
+        assertThat(load(settledEnd.minusDays(1), settledEnd, List.of("/events/1"))).isEqualTo(2);
+    }
+
+    @Test
+    void acceptedHitEvictsUnfilteredEntry() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        LocalDateTime end = LocalDateTime.now().plusHours(1);
+
+        load(start, end, null);
+        cache.invalidate(List.of(hit("/events/3", LocalDateTime.now())));
+
+        assertThat(load(start, end, null)).isEqualTo(2);
+    }
+
+    @Test
+    void acceptedHitEvictsMultiUriEntryContainingItsUri() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        LocalDateTime end = LocalDateTime.now().plusHours(1);
+
+        load(start, end, List.of("/events/1", "/events/2"));
+        cache.invalidate(List.of(hit("/events/2", LocalDateTime.now())));
+
+        assertThat(load(start, end, List.of("/events/2", "/events/1"))).isEqualTo(2);
+    }
+
+    @Test
+    void openEndsWithinOneTtlStepShareAnEntry() {
+        LocalDateTime start = LocalDateTime.now().minusHours(1);
+        LocalDateTime step = LocalDateTime.now().plusHours(1).truncatedTo(ChronoUnit.MINUTES);
+
+        assertThat(load(start, step.plusSeconds(10), List.of("/events/1"))).isEqualTo(1);
+        assertThat(load(start, step.plusSeconds(50), List.of("/events/1"))).isEqualTo(1);
+        assertThat(load(start, step.plusMinutes(1), List.of("/events/1"))).isEqualTo(2);
+    }
+
+    private long load(LocalDateTime start, LocalDateTime end, List<String> uris) {
+        return cache.get(start, end, false, false, uris,
+                () -> List.of(new ViewStatsDto("ewm-main-service", "/events", loads.incrementAndGet()))).get(0).getHits();
+    }
+
+    private static EndpointHit hit(String uri, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip("192.168.0.1")
+                .timestamp(timestamp)
+                .build();
+    }
+}
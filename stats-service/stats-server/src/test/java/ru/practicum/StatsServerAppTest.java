@@ -0,0 +1,24 @@
+package ru.practicum;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:stats-context;DB_CLOSE_DELAY=-1")
+@ActiveProfiles("check")
+class StatsServerAppTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void contextLoadsWithCheckProfile() {
+        for (String table : new String[]{"uris", "hits", "hits_rollup", "hits_ip_sketch", "hits_top_sketch",
+                "hits_compaction"}) {
+            assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class)).isZero();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package ru.practicum;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ingest.HitDeduplicator;
+import ru.practicum.ingest.HitIngestQueue;
+import ru.practicum.ingest.IngestAdmission;
+import ru.practicum.storage.HitStorage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StatsServiceIngestTest {
+    private final HitIngestQueue queue = mock(HitIngestQueue.class);
+    private final IngestAdmission admission = mock(IngestAdmission.class);
+    private final StatsService service = new StatsService(mock(HitStorage.class), queue, admission,
+            new HitDeduplicator(new SimpleMeterRegistry(), true, Duration.ofMinutes(10), 10_000, 0.0001),
+            mock(HotWindowAggregator.class), mock(StatsResultCache.class));
+
+    @BeforeEach
+    void passThroughAdmission() {
+        when(admission.sample(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void retryOfHitDroppedByQueueIsAccepted() {
+        when(queue.submit(anyList())).thenReturn(List.of()).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.createNewEndpointHit(hit("hit-1"));
+        service.createNewEndpointHit(hit("hit-1"));
+        service.createNewEndpointHit(hit("hit-1"));
+
+        verify(queue, times(2)).submit(anyList());
+    }
+
+    @Test
+    void retryOfSampledOutHitIsAccepted() {
+        when(admission.sample(anyList())).thenReturn(List.of()).thenAnswer(invocation -> invocation.getArgument(0));
+        when(queue.submit(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.createNewEndpointHits(List.of(hit("hit-1")));
+        service.createNewEndpointHits(List.of(hit("hit-1")));
+        service.createNewEndpointHits(List.of(hit("hit-1")));
+
+        verify(admission, times(2)).sample(anyList());
+        verify(queue, times(2)).submit(anyList());
+    }
+
+    private static EndpointHitDto hit(String hitId) {
+        return EndpointHitDto.builder()
+                .hitId(hitId)
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("192.168.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
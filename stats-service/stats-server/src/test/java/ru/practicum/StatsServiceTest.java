@@ -0,0 +1,207 @@
+package ru.practicum;
+
+import org.assertj.core.groups.Tuple;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats-service;DB_CLOSE_DELAY=-1",
+        "stats.ingest.async.enabled=false",
+        "stats.cache.enabled=false"
+})
+@ActiveProfiles("check")
+class StatsServiceTest {
+    private static final LocalDateTime SEEDED_AT = LocalDateTime.now().minusDays(2).withNano(0);
+    private static final Map<String, Integer> VISITORS = Map.of(
+            "/events/1", 3000,
+            "/events/2", 400,
+            "/events/3", 7);
+
+    @Autowired
+    private StatsService service;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void approximateUniqueCountsStayWithinErrorBoundOfExactCounts() {
+        List<EndpointHitDto> batch = new ArrayList<>();
+        VISITORS.forEach((uri, visitors) -> {
+            for (int i = 0; i < visitors * 2; i++) {
+                int ip = i % visitors;
+                batch.add(EndpointHitDto.builder()
+                        .hitId(uri + "#" + i)
+                        .app("ewm-main-service")
+                        .uri(uri)
+                        .ip("10." + (ip >> 16 & 0xFF) + "." + (ip >> 8 & 0xFF) + "." + (ip & 0xFF))
+                        .timestamp(SEEDED_AT.plusSeconds(i % 7200))
+                        .build());
+            }
+        });
+        service.createNewEndpointHits(batch);
+        service.createNewEndpointHits(batch);
+
+        LocalDateTime start = SEEDED_AT.minusHours(1);
+        LocalDateTime end = SEEDED_AT.plusHours(3);
+        List<String> uris = List.copyOf(VISITORS.keySet());
+        Map<String, Long> total = byUri(service.getStats(start, end, false, false, uris));
+        Map<String, Long> exact = byUri(service.getStats(start, end, true, false, uris));
+        Map<String, Long> approx = byUri(service.getStats(start, end, true, true, uris));
+
+        double error = service.getApproxRelativeError();
+        assertThat(error).isCloseTo(0.0163, within(0.001));
+        assertThat(service.isApproximate(start, true, true)).isTrue();
+        assertThat(service.isApproximate(start, true, false)).isFalse();
+        VISITORS.forEach((uri, visitors) -> {
+            assertThat(total.get(uri)).isEqualTo(visitors * 2L);
+            assertThat(exact.get(uri)).isEqualTo(visitors.longValue());
+            assertThat((double) approx.get(uri)).isCloseTo(visitors, within(Math.max(1, 3 * error * visitors)));
+        });
+    }
+
+    @Test
+    void sketchCountsStayWithinThreeStandardErrorsOfCountDistinct() {
+        LocalDateTime seededAt = LocalDateTime.now().minusDays(5).truncatedTo(ChronoUnit.HOURS);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            int ip = (i * 7919) % 25_000;
+            batch.add(EndpointHitDto.builder()
+                    .hitId("/events/hll#" + i)
+                    .app("ewm-main-service")
+                    .uri("/events/hll")
+                    .ip("172.16." + (ip >> 8 & 0xFF) + "." + (ip & 0xFF))
+                    .timestamp(seededAt.plusSeconds(i % (6 * 3600)))
+                    .build());
+        }
+        service.createNewEndpointHits(batch);
+
+        LocalDateTime start = seededAt.minusHours(1);
+        LocalDateTime end = seededAt.plusHours(7);
+        long exact = jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT h.ip) FROM hits h " +
+                        "JOIN uris u ON u.id = h.uri_id WHERE u.uri = '/events/hll' AND h.timestamp BETWEEN ? AND ?",
+                Long.class, Timestamp.valueOf(start), Timestamp.valueOf(end));
+        long approx = byUri(service.getStats(start, end, true, true, List.of("/events/hll"))).get("/events/hll");
+
+        assertThat(exact).isEqualTo(25_000);
+        assertThat((double) approx).isCloseTo(exact, within(3 * service.getApproxRelativeError() * exact));
+    }
+
+    @Test
+    void uniqueCountsDoNotRepeatIpsSeenBeforeHotWindow() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        List.of("10.1.0.1", "10.1.0.2").forEach(ip -> batch.add(hit("/events/hot", ip, now.minusHours(1))));
+        batch.add(hit("/events/cold", "10.1.0.1", now.minusHours(1)));
+        List.of("10.1.0.1", "10.1.0.3").forEach(ip -> batch.add(hit("/events/hot", ip, now)));
+        batch.add(hit("/events/cold", "10.1.0.2", now));
+        service.createNewEndpointHits(batch);
+
+        LocalDateTime start = now.minusHours(2);
+        LocalDateTime end = now.plusMinutes(1);
+        List<String> uris = List.of("/events/hot", "/events/cold");
+        List<ViewStatsDto> streamed = new ArrayList<>();
+        service.streamStats(start, end, true, false, uris, streamed::add);
+
+        assertThat(byUri(service.getStats(start, end, true, false, uris)))
+                .containsExactlyInAnyOrderEntriesOf(Map.of("/events/hot", 3L, "/events/cold", 2L));
+        assertThat(byUri(streamed)).containsExactlyInAnyOrderEntriesOf(Map.of("/events/hot", 3L, "/events/cold", 2L));
+    }
+
+    @Test
+    void retriedHitsAreCountedOnce() {
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        EndpointHitDto single = hit("/events/retried", "10.2.0.1", now.minusHours(1));
+        List<EndpointHitDto> batch = List.of(hit("/events/retried", "10.2.0.2", now.minusHours(1)),
+                hit("/events/retried", "10.2.0.3", now));
+
+        service.createNewEndpointHit(single);
+        service.createNewEndpointHit(single);
+        service.createNewEndpointHits(batch);
+        service.createNewEndpointHits(batch);
+
+        assertThat(service.getStats(now.minusHours(2), now.plusMinutes(1), false, false, List.of("/events/retried")))
+                .extracting(ViewStatsDto::getHits)
+                .containsExactly(3L);
+    }
+
+    @Test
+    void topStatsCountOnlyHitsInsidePartialEdgeHours() {
+        LocalDateTime hour = LocalDateTime.now().minusDays(20).truncatedTo(ChronoUnit.HOURS);
+        service.createNewEndpointHits(List.of(
+                hit("/top/1", "10.1.0.1", hour.plusMinutes(10)),
+                hit("/top/1", "10.1.0.2", hour.plusMinutes(50)),
+                hit("/top/2", "10.1.0.3", hour.plusMinutes(70)),
+                hit("/top/2", "10.1.0.4", hour.plusMinutes(100)),
+                hit("/top/2", "10.1.0.5", hour.plusMinutes(130)),
+                hit("/top/3", "10.1.0.6", hour.plusMinutes(170))));
+        LocalDateTime start = hour.plusMinutes(30);
+        LocalDateTime end = hour.plusMinutes(150);
+
+        TopStatsDto top = service.getTopStats(start, end, 10);
+
+        assertThat(top.getStart()).isEqualTo(start);
+        assertThat(top.getEnd()).isEqualTo(end);
+        assertThat(top.getTotalHits()).isEqualTo(4);
+        assertThat(top.getTop()).extracting(TopViewStatsDto::getUri, TopViewStatsDto::getHits)
+                .containsExactly(tuple("/top/2", 3L), tuple("/top/1", 1L));
+    }
+
+    @Test
+    void timeSeriesMergesHotWindowIntoPersistedBuckets() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime base = now.truncatedTo(ChronoUnit.MINUTES).minusMinutes(15);
+        List<EndpointHitDto> batch = new ArrayList<>();
+        for (int i = 0; i < 53; i++) {
+            batch.add(hit("/series/" + (i % 2 + 1), "10.2.0." + i % 3,
+                    base.plusSeconds(i * 17L).plusNanos(i % 4 == 0 ? 250_000_000 : 0)));
+        }
+        for (int minute : List.of(3, 9, 11, 14)) {
+            batch.add(hit("/series/1", "10.2.1." + minute, base.plusMinutes(minute)));
+            batch.add(hit("/series/2", "10.2.1." + minute, base.plusMinutes(minute + 1).minusNanos(1_000_000)));
+        }
+        service.createNewEndpointHits(batch);
+
+        Map<String, TreeMap<LocalDateTime, List<EndpointHitDto>>> byBucket = batch.stream()
+                .collect(Collectors.groupingBy(EndpointHitDto::getUri, TreeMap::new, Collectors.groupingBy(
+                        h -> h.getTimestamp().truncatedTo(ChronoUnit.MINUTES), TreeMap::new, Collectors.toList())));
+        List<String> uris = List.of("/series/1", "/series/2");
+        for (boolean unique : List.of(false, true)) {
+            List<Tuple> expected = new ArrayList<>();
+            byBucket.forEach((uri, buckets) -> buckets.forEach((bucket, hits) -> expected.add(tuple(uri, bucket,
+                    unique ? hits.stream().map(EndpointHitDto::getIp).distinct().count() : (long) hits.size()))));
+
+            assertThat(service.getTimeSeries(base, LocalDateTime.now(), "minute", unique, uris))
+                    .extracting(ViewStatsPointDto::getUri, ViewStatsPointDto::getBucket, ViewStatsPointDto::getHits)
+                    .containsExactlyElementsOf(expected);
+        }
+    }
+
+    private static EndpointHitDto hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHitDto.builder()
+                .hitId(uri + "#" + ip + "#" + timestamp)
+                .app("ewm-main-service")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+
+    private static Map<String, Long> byUri(List<ViewStatsDto> stats) {
+        return stats.stream().collect(Collectors.toMap(ViewStatsDto::getUri, ViewStatsDto::getHits));
+    }
+}
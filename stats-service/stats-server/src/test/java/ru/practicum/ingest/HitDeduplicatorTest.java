@@ -0,0 +1,106 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.EndpointHitDto;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HitDeduplicatorTest {
+    private static final Duration WINDOW = Duration.ofMillis(300);
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final HitDeduplicator deduplicator = deduplicator(true);
+
+    @Test
+    void rejectsRepeatedIdWithinWindow() {
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isTrue();
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isFalse();
+        assertThat(firstSeen(deduplicator, hit("hit-2"))).isTrue();
+        assertThat(firstSeen(deduplicator, hit("hit-2"))).isFalse();
+
+        assertThat(registry.counter("stats.dedup.duplicates").count()).isEqualTo(2);
+    }
+
+    @Test
+    void remembersIdAcrossOneRotation() throws InterruptedException {
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isTrue();
+
+        Thread.sleep(WINDOW.toMillis() + 100);
+
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isFalse();
+        assertThat(firstSeen(deduplicator, hit("hit-2"))).isTrue();
+    }
+
+    @Test
+    void forgetsIdAfterTwoRotations() throws InterruptedException {
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isTrue();
+
+        Thread.sleep(WINDOW.toMillis() * 2 + 100);
+
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isTrue();
+    }
+
+    @Test
+    void acceptsHitsWithoutId() {
+        assertThat(firstSeen(deduplicator, hit(null))).isTrue();
+        assertThat(firstSeen(deduplicator, hit(null))).isTrue();
+        assertThat(firstSeen(deduplicator, hit(""))).isTrue();
+        assertThat(firstSeen(deduplicator, hit(""))).isTrue();
+
+        assertThat(registry.counter("stats.dedup.duplicates").count()).isZero();
+    }
+
+    @Test
+    void acceptsRepeatedIdWhenDisabled() {
+        HitDeduplicator disabled = deduplicator(false);
+
+        assertThat(firstSeen(disabled, hit("hit-1"))).isTrue();
+        assertThat(firstSeen(disabled, hit("hit-1"))).isTrue();
+    }
+
+    @Test
+    void releasedClaimCanBeRetried() {
+        assertThat(deduplicator.claim(hit("hit-1"))).isTrue();
+        deduplicator.release(List.of("hit-1"));
+
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isTrue();
+        assertThat(firstSeen(deduplicator, hit("hit-1"))).isFalse();
+    }
+
+    @Test
+    void rejectsIdClaimedByRequestInProgress() {
+        assertThat(deduplicator.claim(hit("hit-1"))).isTrue();
+
+        assertThat(deduplicator.claim(hit("hit-1"))).isFalse();
+        deduplicator.confirm(List.of("hit-1"));
+        deduplicator.release(List.of("hit-1"));
+        assertThat(deduplicator.claim(hit("hit-1"))).isFalse();
+    }
+
+    private static boolean firstSeen(HitDeduplicator deduplicator, EndpointHitDto hit) {
+        if (!deduplicator.claim(hit)) {
+            return false;
+        }
+        deduplicator.confirm(Collections.singletonList(hit.getHitId()));
+        return true;
+    }
+
+    private HitDeduplicator deduplicator(boolean enabled) {
+        return new HitDeduplicator(registry, enabled, WINDOW, 10_000, 0.0001);
+    }
+
+    private static EndpointHitDto hit(String hitId) {
+        return EndpointHitDto.builder()
+                .hitId(hitId)
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("192.168.0.1")
+                .build();
+    }
+}
@@ -0,0 +1,181 @@
+package ru.practicum.ingest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.practicum.EndpointHitDto;
+import ru.practicum.HitPartitionManager;
+import ru.practicum.HotWindowAggregator;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class HitImporterTest {
+    private static final DataSize CHUNK_SIZE = DataSize.ofBytes(64);
+    private static final int BATCH_SIZE = 3;
+
+    @TempDir
+    Path dir;
+
+    private final HitWriter writer = mock(HitWriter.class);
+    private final HotWindowAggregator hotWindow = mock(HotWindowAggregator.class);
+    private final List<EndpointHit> written = new CopyOnWriteArrayList<>();
+
+    @Test
+    void csvLinesSplitAcrossChunksAreImportedOnce() throws Exception {
+        List<String> lines = new ArrayList<>(List.of("app,uri,ip,timestamp"));
+        for (int i = 0; i < 40; i++) {
+            lines.add("ewm-main-service,/events/" + i + ",10.0.0." + i + ",2024-01-01 10:00:" + (10 + i));
+        }
+        Path file = write("hits.csv", lines);
+        HitImporter importer = importer();
+
+        ImportProgress progress = await(importer, importer.start("hits.csv", null));
+
+        assertThat(progress.state()).isEqualTo(ImportProgress.State.COMPLETED);
+        assertThat(progress.format()).isEqualTo(ImportFormat.CSV);
+        assertThat(progress.imported()).isEqualTo(40);
+        assertThat(progress.rejected()).isZero();
+        assertThat(progress.bytesTotal()).isEqualTo(Files.size(file)).isGreaterThan(10 * CHUNK_SIZE.toBytes());
+        assertThat(progress.bytesProcessed()).isEqualTo(progress.bytesTotal());
+        assertThat(progress.finishedAt()).isNotNull();
+        assertThat(written).extracting(EndpointHit::getUri)
+                .containsExactlyInAnyOrderElementsOf(lines.subList(1, lines.size()).stream()
+                        .map(line -> line.split(",")[1])
+                        .toList());
+        assertThat(written).filteredOn(hit -> hit.getUri().equals("/events/7")).singleElement()
+                .satisfies(hit -> {
+                    assertThat(hit.getApp()).isEqualTo("ewm-main-service");
+                    assertThat(hit.getIp()).isEqualTo("10.0.0.7");
+                    assertThat(hit.getTimestamp()).isEqualTo(LocalDateTime.of(2024, 1, 1, 10, 0, 17));
+                    assertThat(hit.getWeight()).isEqualTo(1);
+                });
+        verify(hotWindow, atLeast(40 / BATCH_SIZE)).record(anyList());
+    }
+
+    @Test
+    void ndjsonLinesAreParsedAndBrokenLinesCountedAsRejected() throws Exception {
+        write("hits.ndjson", List.of(
+                "{\"hitId\":\"a\",\"app\":\"ewm\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\","
+                        + "\"timestamp\":\"2024-01-01 10:00:00\",\"weight\":5}",
+                "",
+                "{\"app\":\"ewm\",\"uri\":\"/events/2\",\"ip\":\"10.0.0.2\",\"timestamp\":\"2024-01-01 10:00:01\"}",
+                "{\"app\":\"ewm\",\"uri\":\"/events/3\"",
+                "{\"app\":\"ewm\",\"uri\":\"/events/4\",\"timestamp\":\"2024-01-01 10:00:02\"}",
+                "{\"app\":\"ewm\",\"uri\":\"/events/5\",\"ip\":\"10.0.0.5\",\"timestamp\":\"2024-01-01 10:00:03\","
+                        + "\"weight\":0}",
+                "{\"app\":\"ewm\",\"uri\":\"/events/6\",\"ip\":\"10.0.0.6\",\"timestamp\":\"01.01.2024\"}"));
+        HitImporter importer = importer();
+
+        ImportProgress progress = await(importer, importer.start("hits.ndjson", null));
+
+        assertThat(progress.state()).isEqualTo(ImportProgress.State.COMPLETED);
+        assertThat(progress.format()).isEqualTo(ImportFormat.NDJSON);
+        assertThat(progress.imported()).isEqualTo(2);
+        assertThat(progress.rejected()).isEqualTo(4);
+        assertThat(written).extracting(EndpointHit::getHitId, EndpointHit::getUri, EndpointHit::getWeight)
+                .containsExactlyInAnyOrder(
+                        tuple("a", "/events/1", 5),
+                        tuple(null, "/events/2", 1));
+    }
+
+    @Test
+    void csvLinesWithMissingColumnsOrBadTimestampAreRejected() throws Exception {
+        write("hits.csv", List.of(
+                "ewm,/events/1,10.0.0.1,2024-01-01 10:00:00",
+                "ewm,/events/2",
+                "ewm,/events/3,10.0.0.3,2024-01-01T10:00:00",
+                "ewm,/events/4?a=1,b=2,10.0.0.4,2024-01-01 10:00:01"));
+        HitImporter importer = importer();
+
+        ImportProgress progress = await(importer, importer.start("hits.csv", "csv"));
+
+        assertThat(progress.imported()).isEqualTo(2);
+        assertThat(progress.rejected()).isEqualTo(2);
+        assertThat(written).extracting(EndpointHit::getUri).containsExactlyInAnyOrder("/events/1", "/events/4?a=1,b=2");
+    }
+
+    @Test
+    void hitIdsAlreadyImportedAreSkippedAsDuplicates() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lines.add("{\"hitId\":\"hit-" + i % 7 + "\",\"app\":\"ewm\",\"uri\":\"/events/" + i + "\","
+                    + "\"ip\":\"10.0.0.1\",\"timestamp\":\"2024-01-01 10:00:00\"}");
+        }
+        write("hits.ndjson", lines);
+        HitImporter importer = importer();
+
+        ImportProgress first = await(importer, importer.start("hits.ndjson", null));
+        ImportProgress second = await(importer, importer.start("hits.ndjson", null));
+
+        assertThat(first.imported()).isEqualTo(7);
+        assertThat(first.duplicates()).isEqualTo(3);
+        assertThat(second.imported()).isZero();
+        assertThat(second.duplicates()).isEqualTo(10);
+        assertThat(written).extracting(EndpointHit::getHitId).doesNotHaveDuplicates().hasSize(7);
+    }
+
+    @Test
+    void failedWriteReportsErrorAndReleasesClaimedIds() throws Exception {
+        write("hits.ndjson", List.of(
+                "{\"hitId\":\"hit-1\",\"app\":\"ewm\",\"uri\":\"/events/1\",\"ip\":\"10.0.0.1\","
+                        + "\"timestamp\":\"2024-01-01 10:00:00\"}"));
+        HitWriter failing = mock(HitWriter.class);
+        doThrow(new IllegalStateException("диск переполнен")).when(failing).write(anyList());
+        HitDeduplicator deduplicator = deduplicator();
+        HitImporter importer = new HitImporter(failing, deduplicator, hotWindow, mock(HitPartitionManager.class),
+                new ObjectMapper().findAndRegisterModules(), dir, 2, CHUNK_SIZE, BATCH_SIZE);
+
+        ImportProgress progress = await(importer, importer.start("hits.ndjson", null));
+
+        assertThat(progress.state()).isEqualTo(ImportProgress.State.FAILED);
+        assertThat(progress.error()).contains("диск переполнен");
+        assertThat(progress.imported()).isZero();
+        assertThat(deduplicator.claim(EndpointHitDto.builder().hitId("hit-1").build())).isTrue();
+    }
+
+    private HitImporter importer() {
+        doAnswer(invocation -> {
+            written.addAll(invocation.getArgument(0));
+            return null;
+        }).when(writer).write(anyList());
+        return new HitImporter(writer, deduplicator(), hotWindow, mock(HitPartitionManager.class),
+                new ObjectMapper().findAndRegisterModules(), dir, 2, CHUNK_SIZE, BATCH_SIZE);
+    }
+
+    private static HitDeduplicator deduplicator() {
+        return new HitDeduplicator(new SimpleMeterRegistry(), true, Duration.ofMinutes(10), 1000, 0.0001);
+    }
+
+    private Path write(String name, List<String> lines) throws IOException {
+        return Files.write(dir.resolve(name), lines);
+    }
+
+    private static ImportProgress await(HitImporter importer, ImportProgress started) throws InterruptedException {
+        ImportProgress progress = importer.getProgress(started.id());
+        for (int i = 0; i < 100 && progress.state() == ImportProgress.State.RUNNING; i++) {
+            Thread.sleep(50);
+            progress = importer.getProgress(started.id());
+        }
+        assertThat(progress.state()).isNotEqualTo(ImportProgress.State.RUNNING);
+        return progress;
+    }
+}
@@ -0,0 +1,60 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.HotWindowAggregator;
+import ru.practicum.StatsResultCache;
+import ru.practicum.model.EndpointHit;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class HitIngestQueueTest {
+    @Test
+    void stopFlushesRemainingHitsFromWorkerInOrder() {
+        HitWriter writer = mock(HitWriter.class);
+        List<Long> written = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean writing = new AtomicBoolean();
+        AtomicBoolean overlapped = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (!writing.compareAndSet(false, true)) {
+                overlapped.set(true);
+            }
+            List<EndpointHit> batch = invocation.getArgument(0);
+            Thread.sleep(50);
+            batch.forEach(hit -> written.add(hit.getId()));
+            writing.set(false);
+            return null;
+        }).when(writer).write(anyList());
+        HitIngestQueue queue = new HitIngestQueue(writer, mock(HotWindowAggregator.class), mock(StatsResultCache.class),
+                new SimpleMeterRegistry(), true, 10_000, 100, Duration.ofMillis(10));
+        queue.start();
+
+        queue.submit(IntStream.range(0, 2_000).mapToObj(HitIngestQueueTest::hit).toList());
+        queue.stop();
+
+        assertThat(overlapped).isFalse();
+        assertThat(written).hasSize(2_000).isSorted();
+        assertThat(queue.depth()).isZero();
+    }
+
+    private static EndpointHit hit(int id) {
+        return EndpointHit.builder()
+                .id((long) id)
+                .app("ewm-main-service")
+                .uri("/events/" + id % 10)
+                .ip("192.168.0." + id % 250)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.ingest;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.practicum.model.EndpointHit;
+import ru.practicum.storage.HitStorage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class IngestAdmissionTest {
+    private static final int HITS = 100_000;
+
+    @Test
+    void sampledHitsKeepTotalWeightUnbiased() {
+        HitIngestQueue queue = mock(HitIngestQueue.class);
+        when(queue.isAsync()).thenReturn(true);
+        when(queue.fillRatio()).thenReturn(0.6);
+        IngestAdmission admission = new IngestAdmission(queue, new SimpleMeterRegistry(), true, 200, 5,
+                0.5, 0.9, 0.3, Duration.ofSeconds(1));
+
+        List<EndpointHit> kept = admission.sample(IntStream.range(0, HITS).mapToObj(i -> hit()).toList());
+
+        assertThat(kept.size()).isLessThan(HITS / 2);
+        assertThat(kept).allSatisfy(hit -> assertThat(hit.getWeight()).isBetween(3, 4));
+        assertThat((double) kept.stream().mapToLong(EndpointHit::getWeight).sum()).isCloseTo(HITS, within(HITS * 0.03));
+    }
+
+    @Test
+    void scaledWeightAboveStorageLimitIsSplitAcrossRecords() {
+        HitIngestQueue queue = mock(HitIngestQueue.class);
+        when(queue.isAsync()).thenReturn(true);
+        when(queue.fillRatio()).thenReturn(0.6);
+        IngestAdmission admission = new IngestAdmission(queue, new SimpleMeterRegistry(), true, 200, 5,
+                0.5, 0.9, 0.05, Duration.ofSeconds(1));
+        List<EndpointHit> hits = IntStream.range(0, 1000).mapToObj(i -> {
+            EndpointHit hit = hit();
+            hit.setHitId("hit-" + i);
+            hit.setWeight(1_000_000);
+            return hit;
+        }).toList();
+
+        List<EndpointHit> kept = admission.sample(hits);
+
+        assertThat(kept).isNotEmpty().allSatisfy(hit -> assertThat(hit.getWeight()).isBetween(1, HitStorage.MAX_WEIGHT));
+        Map<String, Long> weights = kept.stream().collect(Collectors.groupingBy(EndpointHit::getHitId,
+                Collectors.summingLong(EndpointHit::getWeight)));
+        assertThat(kept).hasSize(weights.size() * 2);
+        assertThat(weights.values()).allSatisfy(weight -> assertThat(weight).isBetween(19_999_999L, 20_000_001L));
+    }
+
+    @Test
+    void hitsBelowSampleThresholdKeepTheirWeight() {
+        HitIngestQueue queue = mock(HitIngestQueue.class);
+        when(queue.isAsync()).thenReturn(true);
+        when(queue.fillRatio()).thenReturn(0.1);
+        IngestAdmission admission = new IngestAdmission(queue, new SimpleMeterRegistry(), true, 200, 5,
+                0.5, 0.9, 0.3, Duration.ofSeconds(1));
+
+        List<EndpointHit> kept = admission.sample(List.of(hit(), hit()));
+
+        assertThat(kept).hasSize(2).allSatisfy(hit -> assertThat(hit.getWeight()).isEqualTo(1));
+    }
+
+    private static EndpointHit hit() {
+        return EndpointHit.builder()
+                .app("ewm-main-service")
+                .uri("/events/1")
+                .ip("192.168.0.1")
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package ru.practicum.sketch;
+
+import org.junit.jupiter.api.Test;
+import ru.practicum.StatsKey;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+    private static final int CAPACITY = 50;
+    private static final int KEYS = 1000;
+    private static final int TOP = 10;
+
+    @Test
+    void estimatesBoundExactCounts() {
+        Map<StatsKey, Long> exact = new HashMap<>();
+        SpaceSaving sketch = new SpaceSaving(CAPACITY);
+        feed(sketch, exact, new Random(1), 50_000);
+
+        assertBounds(sketch, exact);
+    }
+
+    @Test
+    void mergedSketchBoundsExactCountsOfBothStreams() {
+        Map<StatsKey, Long> exact = new HashMap<>();
+        SpaceSaving first = new SpaceSaving(CAPACITY);
+        SpaceSaving second = new SpaceSaving(CAPACITY);
+        feed(first, exact, new Random(2), 30_000);
+        feed(second, exact, new Random(3), 20_000);
+
+        first.merge(SpaceSaving.fromBytes(second.toBytes()));
+
+        assertThat(first.getTotal()).isEqualTo(50_000);
+        assertBounds(first, exact);
+    }
+
+    @Test
+    void sketchBelowCapacityIsExact() {
+        SpaceSaving first = new SpaceSaving(CAPACITY);
+        SpaceSaving second = new SpaceSaving(CAPACITY);
+        first.add(key(1), 5);
+        first.add(key(2), 3);
+        second.add(key(2), 4);
+        second.add(key(3), 1);
+
+        first.merge(second);
+
+        assertThat(first.maxError()).isZero();
+        assertThat(first.top(TOP)).containsExactly(
+                new SpaceSaving.Estimate(key(2), 7, 0, true),
+                new SpaceSaving.Estimate(key(1), 5, 0, true),
+                new SpaceSaving.Estimate(key(3), 1, 0, true));
+    }
+
+    private static void feed(SpaceSaving sketch, Map<StatsKey, Long> exact, Random random, int hits) {
+        for (int i = 0; i < hits; i++) {
+            StatsKey key = key((int) (KEYS * Math.pow(random.nextDouble(), 4)));
+            long weight = 1 + random.nextInt(3);
+            sketch.add(key, weight);
+            exact.merge(key, weight, Long::sum);
+        }
+    }
+
+    private static void assertBounds(SpaceSaving sketch, Map<StatsKey, Long> exact) {
+        List<SpaceSaving.Estimate> all = sketch.top(CAPACITY);
+        Set<StatsKey> monitored = all.stream().map(SpaceSaving.Estimate::key).collect(Collectors.toSet());
+        for (SpaceSaving.Estimate estimate : all) {
+            long count = exact.getOrDefault(estimate.key(), 0L);
+            assertThat(count).as(estimate.key().uri()).isBetween(estimate.count() - estimate.error(), estimate.count());
+        }
+        exact.forEach((key, count) -> {
+            if (count > sketch.maxError()) {
+                assertThat(monitored).as(key.uri()).contains(key);
+            }
+        });
+        List<Long> exactOrder = exact.values().stream().sorted(Comparator.reverseOrder()).toList();
+        long exactKth = exactOrder.get(TOP - 1);
+        for (SpaceSaving.Estimate estimate : sketch.top(TOP)) {
+            if (estimate.guaranteed()) {
+                assertThat(exact.get(estimate.key())).as(estimate.key().uri()).isGreaterThanOrEqualTo(exactKth);
+            }
+        }
+        assertThat(sketch.top(TOP)).anyMatch(SpaceSaving.Estimate::guaranteed);
+    }
+
+    private static StatsKey key(int i) {
+        return new StatsKey("ewm-main-service", "/events/" + i);
+    }
+}
@@ -0,0 +1,108 @@
+package ru.practicum.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.ViewStatsDto;
+import ru.practicum.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+class SegmentHitStorageTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 10, 12, 0);
+    private static final LocalDateTime END = START.plusDays(1);
+    private static final int CAPACITY = 100;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recoveryStopsAtCorruptedTailRecordAndReusesItsSlot() throws IOException {
+        SegmentHitStorage storage = open();
+        storage.append(hits("/events/1", 5));
+        storage.close();
+        try (FileChannel log = FileChannel.open(dir.resolve("segment-00000001.log"), StandardOpenOption.WRITE)) {
+            log.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF}), 4L * Segment.RECORD_SIZE + 8);
+        }
+
+        SegmentHitStorage recovered = open();
+
+        assertThat(stats(recovered)).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/1", 4L));
+        recovered.append(hits("/events/1", 2));
+        recovered.close();
+        assertThat(stats(open())).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/1", 6L));
+    }
+
+    @Test
+    void recoveryDropsRecordsWrittenPastTruncatedLog() throws IOException {
+        SegmentHitStorage storage = open();
+        storage.append(hits("/events/1", 5));
+        storage.close();
+        try (FileChannel log = FileChannel.open(dir.resolve("segment-00000001.log"), StandardOpenOption.WRITE)) {
+            log.truncate(2L * Segment.RECORD_SIZE + Segment.RECORD_SIZE / 2);
+        }
+
+        SegmentHitStorage recovered = open();
+
+        assertThat(stats(recovered)).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/1", 2L));
+        recovered.append(hits("/events/2", 3));
+        recovered.close();
+        assertThat(stats(open())).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/2", 3L), tuple("/events/1", 2L));
+    }
+
+    @Test
+    void recoveryDropsRecordsReferringToTruncatedDictionaryEntry() throws IOException {
+        SegmentHitStorage storage = open();
+        storage.append(hits("/events/1", 3));
+        storage.append(hits("/events/2", 2));
+        storage.close();
+        try (FileChannel dictionary = FileChannel.open(dir.resolve("segment-00000001.dict"), StandardOpenOption.WRITE)) {
+            dictionary.truncate(dictionary.size() - 2);
+        }
+
+        SegmentHitStorage recovered = open();
+
+        assertThat(stats(recovered)).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/1", 3L));
+        recovered.append(hits("/events/2", 4));
+        recovered.close();
+        assertThat(stats(open())).extracting(ViewStatsDto::getUri, ViewStatsDto::getHits)
+                .containsExactly(tuple("/events/2", 4L), tuple("/events/1", 3L));
+    }
+
+    private SegmentHitStorage open() throws IOException {
+        SegmentHitStorage storage = new SegmentHitStorage(dir, CAPACITY, 12, 100);
+        storage.open();
+        return storage;
+    }
+
+    private static List<ViewStatsDto> stats(SegmentHitStorage storage) {
+        return storage.getStats(START, END, null);
+    }
+
+    private static List<EndpointHit> hits(String uri, int count) {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hits.add(EndpointHit.builder()
+                    .app("ewm-main-service")
+                    .uri(uri)
+                    .ip("192.168.0." + i)
+                    .timestamp(START.plusMinutes(i))
+                    .build());
+        }
+        return hits;
+    }
+}